@@ -1,7 +1,13 @@
 package no.petroware.logio.json;
 
+import java.nio.DoubleBuffer;
+import java.util.Objects;
+
 import no.petroware.logio.common.Statistics;
 import no.petroware.logio.util.DataArray;
+import no.petroware.logio.util.DoubleMatrix;
+import no.petroware.logio.util.MappedFile;
+import no.petroware.logio.util.MemoryMode;
 import no.petroware.logio.util.Util;
 
 /**
@@ -9,6 +15,10 @@ import no.petroware.logio.util.Util;
  * <p>
  * A log curve consist of measurement data of a specific type.
  * The curve may have one or more dimensions.
+ * <p>
+ * The values of multi-dimensional curves of type double kept on the
+ * heap are stored contiguously in row-major order, so that all the
+ * values of an index are adjacent, see {@link #getArray}.
  *
  * @author <a href="mailto:info@petroware.no">Petroware AS</a>
  */
@@ -35,8 +45,26 @@ public final class JsonCurve
   /** The curve values. Array of nDimensions. */
   private final DataArray[] values_;
 
+  /** The curve values in row-major order. Null if kept per dimension. */
+  private DoubleMatrix matrix_ = null;
+
+  /** Where the curve values are kept. Non-null. */
+  private MemoryMode memoryMode_ = MemoryMode.HEAP;
+
+  /** File to map the curve values from in file mapped mode. Null if private to each value array. */
+  private MappedFile mappedFile_ = null;
+
+  /**
+   * Relative tolerance of values kept as 32-bit floats.
+   * Null if the values are kept as doubles.
+   */
+  private Double singlePrecisionTolerance_ = null;
+
   /** Curve statistics. */
-  private final Statistics statistics_ = new Statistics();
+  private Statistics statistics_ = new Statistics();
+
+  /** Loader of the curve values if these are not yet loaded. Null if loaded. */
+  private volatile JsonDataLoader dataLoader_ = null;
 
   /**
    * Create a JSON Well Log Format curve instance.
@@ -70,8 +98,25 @@ public final class JsonCurve
     nDimensions_ = nDimensions;
 
     values_ = new DataArray[nDimensions_];
+    createValues();
+  }
+
+  /**
+   * Create empty curve values according to the value type, dimension
+   * and memory mode of this curve.
+   */
+  private void createValues()
+  {
+    boolean isRowMajor = nDimensions_ > 1 && valueType_ == Double.class && memoryMode_ == MemoryMode.HEAP;
+
+    matrix_ = isRowMajor ? new DoubleMatrix(nDimensions_) : null;
     for (int i = 0; i < nDimensions_; i++)
-      values_[i] = new DataArray(valueType_);
+      values_[i] = isRowMajor ? matrix_.getColumn(i) : new DataArray(valueType_, memoryMode_, mappedFile_);
+
+    if (singlePrecisionTolerance_ != null && !isRowMajor) {
+      for (int i = 0; i < nDimensions_; i++)
+        values_[i].setSinglePrecision(singlePrecisionTolerance_);
+    }
   }
 
   /**
@@ -136,6 +181,176 @@ public final class JsonCurve
     return nDimensions_;
   }
 
+  /**
+   * Specify the loader of the values of this curve in case
+   * these are read on demand.
+   *
+   * @param dataLoader  Loader of the curve values. Null if the
+   *                    curve values are present.
+   */
+  void setDataLoader(JsonDataLoader dataLoader)
+  {
+    dataLoader_ = dataLoader;
+  }
+
+  /**
+   * Specify where the values of this curve are kept. Existing values
+   * are moved accordingly. Segmented and off-heap modes are useful for
+   * very large logs, and apply to curves of type double, float and
+   * integer only.
+   *
+   * @param memoryMode  Where to keep the curve values. Non-null.
+   * @throws IllegalArgumentException  If memoryMode is null.
+   * @throws java.io.UncheckedIOException  If moving the values fails.
+   */
+  public void setMemoryMode(MemoryMode memoryMode)
+  {
+    setMemoryMode(memoryMode, null);
+  }
+
+  /**
+   * Specify where the values of this curve are kept, sharing the
+   * specified file with other curves in file mapped mode.
+   *
+   * @param memoryMode  Where to keep the curve values. Non-null.
+   * @param mappedFile  File to map the curve values from in file mapped mode.
+   *                    Null to use temporary files private to the curve.
+   * @throws IllegalArgumentException  If memoryMode is null.
+   * @throws java.io.UncheckedIOException  If moving the values fails.
+   */
+  synchronized void setMemoryMode(MemoryMode memoryMode, MappedFile mappedFile)
+  {
+    if (memoryMode == null)
+      throw new IllegalArgumentException("memoryMode cannot be null");
+
+    if (memoryMode == memoryMode_)
+      return;
+
+    memoryMode_ = memoryMode;
+    mappedFile_ = mappedFile;
+
+    // Values read on demand are moved as they are loaded
+    if (dataLoader_ != null)
+      return;
+
+    moveValues(this);
+  }
+
+  /**
+   * Return where the values of this curve are kept.
+   *
+   * @return  Memory mode of this curve. Never null.
+   */
+  public MemoryMode getMemoryMode()
+  {
+    return memoryMode_;
+  }
+
+  /**
+   * Specify that the values of this curve should be kept as 32-bit
+   * floats rather than doubles, which halves the memory use of the curve.
+   * This is safe for most measured values, as these are typically
+   * of less than single precision to begin with.
+   * <p>
+   * The float representation of a value must be within the specified
+   * relative tolerance of the value itself. If a value is not, the
+   * curve reverts to keeping all its values as doubles. Values are
+   * returned as doubles in either case. Applies to one-dimensional
+   * curves of type double kept on the Java heap only.
+   *
+   * @param tolerance  Largest relative difference between a value and its
+   *                   float representation, such as 1.0e-6. [0,&gt;.
+   *                   Null to keep values as doubles, the default.
+   * @throws IllegalArgumentException  If tolerance is negative or Double.NaN.
+   */
+  public synchronized void setSinglePrecision(Double tolerance)
+  {
+    if (tolerance != null && (tolerance.isNaN() || tolerance < 0.0))
+      throw new IllegalArgumentException("Invalid tolerance: " + tolerance);
+
+    if (valueType_ != Double.class || nDimensions_ > 1)
+      return;
+
+    if (Objects.equals(tolerance, singlePrecisionTolerance_))
+      return;
+
+    singlePrecisionTolerance_ = tolerance;
+
+    // Values read on demand are converted as they are loaded
+    if (dataLoader_ != null)
+      return;
+
+    moveValues(this);
+  }
+
+  /**
+   * Return the relative tolerance of values of this curve kept as
+   * 32-bit floats.
+   *
+   * @return  Relative tolerance of values kept as floats. Null
+   *          if values are kept as doubles.
+   * @see #setSinglePrecision
+   */
+  public Double getSinglePrecision()
+  {
+    return singlePrecisionTolerance_;
+  }
+
+  /**
+   * Replace the values of this curve by the values of the specified
+   * curve, kept according to the memory mode and precision of this curve.
+   *
+   * @param curve  Curve to move values from. Non-null. Of the same
+   *               value type and dimension as this curve. May be
+   *               this curve itself.
+   */
+  private void moveValues(JsonCurve curve)
+  {
+    assert curve != null : "curve cannot be null";
+    assert curve.valueType_ == valueType_ : "Incompatible value type: " + curve.valueType_;
+    assert curve.nDimensions_ == nDimensions_ : "Incompatible dimension: " + curve.nDimensions_;
+
+    // The values of another curve are taken over as is if possible
+    if (curve != this && curve.memoryMode_ == memoryMode_ &&
+        Objects.equals(curve.singlePrecisionTolerance_, singlePrecisionTolerance_)) {
+      matrix_ = curve.matrix_;
+      for (int i = 0; i < nDimensions_; i++)
+        values_[i] = curve.values_[i];
+      return;
+    }
+
+    DataArray[] values = curve.values_.clone();
+
+    createValues();
+    for (int i = 0; i < nDimensions_; i++)
+      values_[i].addAll(values[i]);
+
+    trim();
+  }
+
+  /**
+   * Load the values of this curve if these are read on demand
+   * and not yet loaded.
+   *
+   * @throws java.io.UncheckedIOException  If loading the values fails.
+   */
+  private void load()
+  {
+    if (dataLoader_ == null)
+      return;
+
+    synchronized (this) {
+      if (dataLoader_ == null)
+        return;
+
+      JsonCurve curve = dataLoader_.load(this);
+      moveValues(curve);
+      statistics_ = curve.statistics_;
+
+      dataLoader_ = null;
+    }
+  }
+
   /**
    * Add a value to this curve.
    *
@@ -148,9 +363,52 @@ public final class JsonCurve
     if (dimension < 0 || dimension >= nDimensions_)
       throw new IllegalArgumentException("Invalid dimension: " + dimension);
 
+    load();
     values_[dimension].add(Util.getAsType(value, valueType_));
   }
 
+  /**
+   * Add a numeric value to this curve. The value is converted to
+   * the value type of the curve, but unlike {@link #addValue(int,Object)}
+   * no boxing is involved for the primitive backed types.
+   *
+   * @param dimension  Dimension index. [0,nDimensions&gt;.
+   * @param value      Value to add. Double.NaN to indicate absent.
+   * @throws IllegalArgumentException  If dimension is out of bounds.
+   */
+  public void addDouble(int dimension, double value)
+  {
+    if (dimension < 0 || dimension >= nDimensions_)
+      throw new IllegalArgumentException("Invalid dimension: " + dimension);
+
+    load();
+    values_[dimension].addDouble(value);
+  }
+
+  /**
+   * Add all the values of the specified curve to the end of this curve.
+   * The curve statistics is not affected.
+   *
+   * @param curve  Curve to add values of. Non-null. Must be of the
+   *               same value type and dimension as this curve.
+   */
+  void addValues(JsonCurve curve)
+  {
+    assert curve != null : "curve cannot be null";
+    assert curve.valueType_ == valueType_ : "Incompatible value type: " + curve.valueType_;
+    assert curve.nDimensions_ == nDimensions_ : "Incompatible dimension: " + curve.nDimensions_;
+
+    load();
+
+    if (matrix_ != null && curve.matrix_ != null) {
+      matrix_.addAll(curve.matrix_);
+      return;
+    }
+
+    for (int dimension = 0; dimension < nDimensions_; dimension++)
+      values_[dimension].addAll(curve.values_[dimension]);
+  }
+
   /**
    * Add a value to this curve. If this is a multi-dimensional
    * curve, the value is added to the first dimension.
@@ -169,6 +427,7 @@ public final class JsonCurve
    */
   public int getNValues()
   {
+    load();
     return values_[0].size();
   }
 
@@ -181,6 +440,7 @@ public final class JsonCurve
   int getNValues(int dimension)
   {
     assert dimension >= 0 && dimension < nDimensions_ : "Invalid dimenion: " + dimension;
+    load();
     return values_[dimension].size();
   }
 
@@ -197,6 +457,7 @@ public final class JsonCurve
     if (dimension < 0 || dimension >= nDimensions_)
       throw new IllegalArgumentException("Invalid dimension: " + dimension);
 
+    load();
     return values_[dimension].get(index);
   }
 
@@ -214,6 +475,287 @@ public final class JsonCurve
     return getValue(0, index);
   }
 
+  /**
+   * Check if a specific value from the given dimension of this curve is absent.
+   *
+   * @param dimension  Dimension index. [0,nDimensions&gt;.
+   * @param index      Position index. [0,nValues&gt;.
+   * @return           True if the value is absent, false otherwise.
+   * @throws IllegalArgumentException  If dimension is out of bounds.
+   */
+  public boolean isNull(int dimension, int index)
+  {
+    if (dimension < 0 || dimension >= nDimensions_)
+      throw new IllegalArgumentException("Invalid dimension: " + dimension);
+
+    load();
+    return values_[dimension].isNull(index);
+  }
+
+  /**
+   * Return a specific value from the given dimension of this curve
+   * as a double.
+   * Unlike {@link #getValue(int,int)} no boxing is involved
+   * for the primitive backed types.
+   *
+   * @param dimension  Dimension index. [0,nDimensions&gt;.
+   * @param index      Position index. [0,nValues&gt;.
+   * @return           The requested value. Double.NaN if absent.
+   * @throws IllegalArgumentException  If dimension is out of bounds.
+   */
+  public double getDouble(int dimension, int index)
+  {
+    if (dimension < 0 || dimension >= nDimensions_)
+      throw new IllegalArgumentException("Invalid dimension: " + dimension);
+
+    load();
+    return values_[dimension].getDouble(index);
+  }
+
+  /**
+   * Return a specific value from this curve as a double. If this is
+   * a multi-dimensional curve, the value is retrieved from the first dimension.
+   *
+   * @param index  Position index. [0,nValues&gt;.
+   * @return       The requested value. Double.NaN if absent.
+   */
+  public double getDouble(int index)
+  {
+    return getDouble(0, index);
+  }
+
+  /**
+   * Return a specific value from the given dimension of this curve
+   * as a float.
+   *
+   * @param dimension  Dimension index. [0,nDimensions&gt;.
+   * @param index      Position index. [0,nValues&gt;.
+   * @return           The requested value. Float.NaN if absent.
+   * @throws IllegalArgumentException  If dimension is out of bounds.
+   */
+  public float getFloat(int dimension, int index)
+  {
+    if (dimension < 0 || dimension >= nDimensions_)
+      throw new IllegalArgumentException("Invalid dimension: " + dimension);
+
+    load();
+    return values_[dimension].getFloat(index);
+  }
+
+  /**
+   * Return a specific value from the given dimension of this curve
+   * as an int.
+   *
+   * @param dimension  Dimension index. [0,nDimensions&gt;.
+   * @param index      Position index. [0,nValues&gt;.
+   * @return           The requested value. Integer.MIN_VALUE if absent.
+   * @throws IllegalArgumentException  If dimension is out of bounds.
+   */
+  public int getInt(int dimension, int index)
+  {
+    if (dimension < 0 || dimension >= nDimensions_)
+      throw new IllegalArgumentException("Invalid dimension: " + dimension);
+
+    load();
+    return values_[dimension].getInt(index);
+  }
+
+  /**
+   * Return a specific value from the given dimension of this curve
+   * as a long.
+   *
+   * @param dimension  Dimension index. [0,nDimensions&gt;.
+   * @param index      Position index. [0,nValues&gt;.
+   * @return           The requested value. Long.MIN_VALUE if absent.
+   * @throws IllegalArgumentException  If dimension is out of bounds.
+   */
+  public long getLong(int dimension, int index)
+  {
+    if (dimension < 0 || dimension >= nDimensions_)
+      throw new IllegalArgumentException("Invalid dimension: " + dimension);
+
+    load();
+    return values_[dimension].getLong(index);
+  }
+
+  /**
+   * Return a specific value from the given dimension of this curve
+   * as a time in milliseconds since the epoch.
+   *
+   * @param dimension  Dimension index. [0,nDimensions&gt;.
+   * @param index      Position index. [0,nValues&gt;.
+   * @return           The requested value. Long.MIN_VALUE if absent.
+   * @throws IllegalArgumentException  If dimension is out of bounds.
+   */
+  public long getEpochMillis(int dimension, int index)
+  {
+    if (dimension < 0 || dimension >= nDimensions_)
+      throw new IllegalArgumentException("Invalid dimension: " + dimension);
+
+    load();
+    return values_[dimension].getEpochMillis(index);
+  }
+
+  /**
+   * Return the code of a specific value from the given dimension of
+   * this string curve. Equal strings have equal codes within a dimension,
+   * so codes can be used in place of the strings for grouping and comparing.
+   *
+   * @param dimension  Dimension index. [0,nDimensions&gt;.
+   * @param index      Position index. [0,nValues&gt;.
+   * @return           The code of the value. [0,nCodes&gt;, or -1 if absent.
+   * @throws IllegalArgumentException  If dimension is out of bounds.
+   * @throws IllegalStateException  If this is not a string curve.
+   * @see DataArray#getCode
+   */
+  public int getCode(int dimension, int index)
+  {
+    if (dimension < 0 || dimension >= nDimensions_)
+      throw new IllegalArgumentException("Invalid dimension: " + dimension);
+
+    load();
+    return values_[dimension].getCode(index);
+  }
+
+  /**
+   * Return the code of a specific value from this string curve. If this
+   * is a multi-dimensional curve, the code is retrieved from the first dimension.
+   *
+   * @param index  Position index. [0,nValues&gt;.
+   * @return       The code of the value. [0,nCodes&gt;, or -1 if absent.
+   * @throws IllegalStateException  If this is not a string curve.
+   */
+  public int getCode(int index)
+  {
+    return getCode(0, index);
+  }
+
+  /**
+   * Return the string of the specified code of the given dimension
+   * of this string curve.
+   *
+   * @param dimension  Dimension index. [0,nDimensions&gt;.
+   * @param code       Code of string. [0,nCodes&gt;.
+   * @return           The string of the code. Never null.
+   * @throws IllegalArgumentException  If dimension is out of bounds.
+   * @throws IllegalStateException  If this is not a string curve.
+   * @throws IndexOutOfBoundsException  If code is out of bounds.
+   */
+  public String getCodeValue(int dimension, int code)
+  {
+    if (dimension < 0 || dimension >= nDimensions_)
+      throw new IllegalArgumentException("Invalid dimension: " + dimension);
+
+    load();
+    return values_[dimension].getCodeValue(code);
+  }
+
+  /**
+   * Return the number of codes, i.e.&nbsp;distinct strings, of the
+   * given dimension of this string curve.
+   *
+   * @param dimension  Dimension index. [0,nDimensions&gt;.
+   * @return           Number of codes of the dimension. [0,&gt;.
+   * @throws IllegalArgumentException  If dimension is out of bounds.
+   * @throws IllegalStateException  If this is not a string curve.
+   */
+  public int getNCodes(int dimension)
+  {
+    if (dimension < 0 || dimension >= nDimensions_)
+      throw new IllegalArgumentException("Invalid dimension: " + dimension);
+
+    load();
+    return values_[dimension].getNCodes();
+  }
+
+  /**
+   * Copy all the values of the given dimension of this curve into
+   * the specified array as doubles.
+   *
+   * @param dimension  Dimension index. [0,nDimensions&gt;.
+   * @param dst        Array to copy into. Non-null.
+   * @param offset     Position in dst of the first value. [0,&gt;.
+   * @throws IllegalArgumentException  If dimension is out of bounds or dst is null.
+   * @throws IndexOutOfBoundsException  If dst is too small to hold the values.
+   */
+  public void copyTo(int dimension, double[] dst, int offset)
+  {
+    if (dimension < 0 || dimension >= nDimensions_)
+      throw new IllegalArgumentException("Invalid dimension: " + dimension);
+
+    load();
+    values_[dimension].copyTo(dst, offset);
+  }
+
+  /**
+   * Copy the values of all dimensions at the specified index of this
+   * curve into the specified array as doubles.
+   * <p>
+   * For multi-dimensional curves of type double kept on the heap this
+   * is a single copy from contiguous memory.
+   *
+   * @param index  Position index. [0,nValues&gt;.
+   * @param dst    Array to copy into. Non-null. Of length nDimensions
+   *               or more. Absent values are set to Double.NaN.
+   * @throws IllegalArgumentException  If dst is null or too small.
+   * @throws IndexOutOfBoundsException  If index is out of bounds.
+   */
+  public void getArray(int index, double[] dst)
+  {
+    if (dst == null)
+      throw new IllegalArgumentException("dst cannot be null");
+
+    if (dst.length < nDimensions_)
+      throw new IllegalArgumentException("Invalid dst length: " + dst.length);
+
+    load();
+
+    if (matrix_ != null) {
+      matrix_.getRow(index, dst, 0);
+      return;
+    }
+
+    for (int dimension = 0; dimension < nDimensions_; dimension++)
+      dst[dimension] = values_[dimension].getDouble(index);
+  }
+
+  /**
+   * Return the values of all dimensions of the specified range of
+   * indices of this curve as doubles in row-major order, i.e.&nbsp;the
+   * value of dimension d at index i is at position
+   * (i - fromIndex) * nDimensions + d of the returned buffer.
+   * <p>
+   * For multi-dimensional curves of type double kept on the heap
+   * the buffer is a read-only view of the curve values, and nothing
+   * is copied. The view is not valid after the curve has been modified.
+   * Otherwise the buffer holds a copy of the values.
+   *
+   * @param fromIndex  First index of the range, inclusive. [0,nValues].
+   * @param toIndex    Last index of the range, exclusive. [fromIndex,nValues].
+   * @return           The values of the range. Absent values are Double.NaN.
+   *                   Never null.
+   * @throws IndexOutOfBoundsException  If fromIndex or toIndex is out of bounds.
+   */
+  public DoubleBuffer getArraySlice(int fromIndex, int toIndex)
+  {
+    load();
+
+    if (matrix_ != null)
+      return matrix_.getRows(fromIndex, toIndex);
+
+    int nValues = getNValues();
+    if (fromIndex < 0 || toIndex > nValues || fromIndex > toIndex)
+      throw new IndexOutOfBoundsException("From: " + fromIndex + " To: " + toIndex + " Size: " + nValues);
+
+    double[] values = new double[(toIndex - fromIndex) * nDimensions_];
+    for (int index = fromIndex; index < toIndex; index++) {
+      for (int dimension = 0; dimension < nDimensions_; dimension++)
+        values[(index - fromIndex) * nDimensions_ + dimension] = values_[dimension].getDouble(index);
+    }
+
+    return DoubleBuffer.wrap(values).asReadOnlyBuffer();
+  }
+
   /**
    * Return the range (i.e.&nbsp;the min and max value) of this curve.
    * The returned array is never null. The two entries may
@@ -233,7 +775,7 @@ public final class JsonCurve
     int nValues = getNValues();
     for (int dimensionNo = 0; dimensionNo < nDimensions_; dimensionNo++) {
       for (int index = 0; index < nValues; index++) {
-        double v = Util.getAsDouble(getValue(dimensionNo, index));
+        double v = getDouble(dimensionNo, index);
         if (Double.isNaN(minValue) || v < minValue)
           minValue = v;
         if (Double.isNaN(maxValue) || v > maxValue)
@@ -247,12 +789,14 @@ public final class JsonCurve
 
   /**
    * Return curve statistics. Statistics is available even if log
-   * data has not been stored.
+   * data has not been stored. If the curve values are read on demand,
+   * this will load the values.
    *
    * @return  Curve statistics. Never null.
    */
   public Statistics getStatistics()
   {
+    load();
     return statistics_;
   }
 
@@ -261,11 +805,27 @@ public final class JsonCurve
    */
   public void clear()
   {
+    dataLoader_ = null;
     for (int dimension = 0; dimension < values_.length; dimension++)
       values_[dimension].clear();
     statistics_.reset();
   }
 
+  /**
+   * Make room for the specified number of values in this curve, so that
+   * the curve lists are not grown until this size is exceeded.
+   *
+   * @param nValues  Number of values to make room for. [0,&gt;.
+   */
+  void ensureCapacity(int nValues)
+  {
+    assert nValues >= 0 : "Invalid nValues: " + nValues;
+
+    load();
+    for (int i = 0; i < nDimensions_; i++)
+      values_[i].ensureCapacity(nValues);
+  }
+
   /**
    * Trim all curve lists to their actual dimension to save memory.
    * The assumption is that the lists are complete and will not grow
@@ -277,6 +837,18 @@ public final class JsonCurve
       values_[i].trim();
   }
 
+  /**
+   * Encode the curve values in a compressed form where this saves
+   * memory. The assumption is that the curve is complete.
+   *
+   * @see DataArray#compress
+   */
+  void compress()
+  {
+    for (int i = 0; i < nDimensions_; i++)
+      values_[i].compress();
+  }
+
   /** {@inheritDoc} */
   @Override
   public String toString()
@@ -0,0 +1,446 @@
+package no.petroware.logio.json;
+
+import java.util.Arrays;
+import java.util.List;
+
+import no.petroware.logio.util.Util;
+
+/**
+ * A block of rows of curve data as passed to a {@link JsonDataBlockListener}
+ * during a JSON read operation.
+ * <p>
+ * The values are kept column wise, one column per curve dimension.
+ * Columns of curves of type double, float and integer are kept as
+ * primitive arrays, while columns of other types are kept as arrays of
+ * objects. The first {@link #getNRows} entries of each column are valid.
+ * <p>
+ * Absent values are indicated by a null bitmap per column. In addition,
+ * absent values are NaN in double and float columns, 0 in integer
+ * columns and null in object columns.
+ * <p>
+ * Typical usage:
+ *
+ * <pre>
+ *   class DataBlockListener implements JsonDataBlockListener
+ *   {
+ *      &#64;Override
+ *      public boolean dataRead(JsonLog log, JsonDataBlock dataBlock)
+ *      {
+ *         double[] depths = dataBlock.getDoubleValues(0, 0);
+ *         for (int rowNo = 0; rowNo &lt; dataBlock.getNRows(); rowNo++) {
+ *           // Process row
+ *           :
+ *         }
+ *
+ *         // Let the reader reuse the block for the next rows
+ *         dataBlock.recycle();
+ *
+ *         // Continue the process
+ *         return true;
+ *      }
+ *    }
+ * </pre>
+ *
+ * @author <a href="mailto:info@petroware.no">Petroware AS</a>
+ */
+public final class JsonDataBlock
+{
+  /** Value type of each curve. */
+  private final Class<?>[] valueTypes_;
+
+  /** Index of the first column of each curve. Has one extra entry at the end. */
+  private final int[] columnOffsets_;
+
+  /** The columns. double[], float[], int[] or Object[] depending on the curve value type. */
+  private final Object[] columns_;
+
+  /** Null bitmap of each column. Bit i is set if the value of row i is absent. */
+  private final long[][] nullBitmaps_;
+
+  /** Maximum number of rows of this block. [1,&gt;. */
+  private final int capacity_;
+
+  /** Number of rows in this block. [0,capacity]. */
+  private int nRows_ = 0;
+
+  /** Indicate if the client has released this block for reuse. */
+  private boolean isRecycled_ = false;
+
+  /**
+   * Create a data block for the specified curves.
+   *
+   * @param curves    Curves of the block. Non-null.
+   * @param capacity  Maximum number of rows of the block. [1,&gt;.
+   */
+  JsonDataBlock(List<JsonCurve> curves, int capacity)
+  {
+    assert curves != null : "curves cannot be null";
+    assert capacity > 0 : "Invalid capacity: " + capacity;
+
+    int nCurves = curves.size();
+
+    valueTypes_ = new Class<?>[nCurves];
+    columnOffsets_ = new int[nCurves + 1];
+    capacity_ = capacity;
+
+    for (int curveNo = 0; curveNo < nCurves; curveNo++) {
+      JsonCurve curve = curves.get(curveNo);
+      valueTypes_[curveNo] = curve.getValueType();
+      columnOffsets_[curveNo + 1] = columnOffsets_[curveNo] + curve.getNDimensions();
+    }
+
+    int nColumns = columnOffsets_[nCurves];
+
+    columns_ = new Object[nColumns];
+    nullBitmaps_ = new long[nColumns][(capacity + 63) / 64];
+
+    for (int curveNo = 0; curveNo < nCurves; curveNo++) {
+      Class<?> valueType = valueTypes_[curveNo];
+      for (int columnNo = columnOffsets_[curveNo]; columnNo < columnOffsets_[curveNo + 1]; columnNo++) {
+        if (valueType == Double.class)
+          columns_[columnNo] = new double[capacity];
+        else if (valueType == Float.class)
+          columns_[columnNo] = new float[capacity];
+        else if (valueType == Integer.class)
+          columns_[columnNo] = new int[capacity];
+        else
+          columns_[columnNo] = new Object[capacity];
+      }
+    }
+
+    startRow();
+  }
+
+  /**
+   * Return the number of rows in this block.
+   *
+   * @return  Number of rows in this block. [0,capacity].
+   */
+  public int getNRows()
+  {
+    return nRows_;
+  }
+
+  /**
+   * Return the maximum number of rows of this block.
+   *
+   * @return  Maximum number of rows of this block. [1,&gt;.
+   */
+  public int getCapacity()
+  {
+    return capacity_;
+  }
+
+  /**
+   * Return the number of curves of this block.
+   *
+   * @return  Number of curves of this block. [0,&gt;.
+   */
+  public int getNCurves()
+  {
+    return valueTypes_.length;
+  }
+
+  /**
+   * Return the number of dimensions of the specified curve.
+   *
+   * @param curveNo  Curve index. [0,nCurves&gt;.
+   * @return         Number of dimensions of the curve. [1,&gt;.
+   * @throws IllegalArgumentException  If curveNo is out of bounds.
+   */
+  public int getNDimensions(int curveNo)
+  {
+    if (curveNo < 0 || curveNo >= valueTypes_.length)
+      throw new IllegalArgumentException("Invalid curveNo: " + curveNo);
+
+    return columnOffsets_[curveNo + 1] - columnOffsets_[curveNo];
+  }
+
+  /**
+   * Return the value type of the specified curve.
+   *
+   * @param curveNo  Curve index. [0,nCurves&gt;.
+   * @return         Value type of the curve. Never null.
+   * @throws IllegalArgumentException  If curveNo is out of bounds.
+   */
+  public Class<?> getValueType(int curveNo)
+  {
+    if (curveNo < 0 || curveNo >= valueTypes_.length)
+      throw new IllegalArgumentException("Invalid curveNo: " + curveNo);
+
+    return valueTypes_[curveNo];
+  }
+
+  /**
+   * Return the column index of the specified curve dimension.
+   *
+   * @param curveNo    Curve index. [0,nCurves&gt;.
+   * @param dimension  Dimension index. [0,nDimensions&gt;.
+   * @return           The requested column index.
+   * @throws IllegalArgumentException  If curveNo or dimension is out of bounds.
+   */
+  private int getColumnNo(int curveNo, int dimension)
+  {
+    if (dimension < 0 || dimension >= getNDimensions(curveNo))
+      throw new IllegalArgumentException("Invalid dimension: " + dimension);
+
+    return columnOffsets_[curveNo] + dimension;
+  }
+
+  /**
+   * Return the values of the specified curve dimension of a curve
+   * of type double.
+   *
+   * @param curveNo    Curve index. [0,nCurves&gt;.
+   * @param dimension  Dimension index. [0,nDimensions&gt;.
+   * @return           The values of the column. Null if the curve
+   *                   is not of type double.
+   * @throws IllegalArgumentException  If curveNo or dimension is out of bounds.
+   */
+  public double[] getDoubleValues(int curveNo, int dimension)
+  {
+    Object column = columns_[getColumnNo(curveNo, dimension)];
+    return column instanceof double[] ? (double[]) column : null;
+  }
+
+  /**
+   * Return the values of the specified curve dimension of a curve
+   * of type float.
+   *
+   * @param curveNo    Curve index. [0,nCurves&gt;.
+   * @param dimension  Dimension index. [0,nDimensions&gt;.
+   * @return           The values of the column. Null if the curve
+   *                   is not of type float.
+   * @throws IllegalArgumentException  If curveNo or dimension is out of bounds.
+   */
+  public float[] getFloatValues(int curveNo, int dimension)
+  {
+    Object column = columns_[getColumnNo(curveNo, dimension)];
+    return column instanceof float[] ? (float[]) column : null;
+  }
+
+  /**
+   * Return the values of the specified curve dimension of a curve
+   * of type integer.
+   *
+   * @param curveNo    Curve index. [0,nCurves&gt;.
+   * @param dimension  Dimension index. [0,nDimensions&gt;.
+   * @return           The values of the column. Null if the curve
+   *                   is not of type integer.
+   * @throws IllegalArgumentException  If curveNo or dimension is out of bounds.
+   */
+  public int[] getIntValues(int curveNo, int dimension)
+  {
+    Object column = columns_[getColumnNo(curveNo, dimension)];
+    return column instanceof int[] ? (int[]) column : null;
+  }
+
+  /**
+   * Return the values of the specified curve dimension of a curve
+   * that is not of type double, float or integer.
+   *
+   * @param curveNo    Curve index. [0,nCurves&gt;.
+   * @param dimension  Dimension index. [0,nDimensions&gt;.
+   * @return           The values of the column. Null if the curve is
+   *                   of type double, float or integer.
+   * @throws IllegalArgumentException  If curveNo or dimension is out of bounds.
+   */
+  public Object[] getObjectValues(int curveNo, int dimension)
+  {
+    Object column = columns_[getColumnNo(curveNo, dimension)];
+    return column instanceof Object[] ? (Object[]) column : null;
+  }
+
+  /**
+   * Return the null bitmap of the specified curve dimension.
+   * Bit i of the bitmap, i.e.&nbsp;<tt>(bitmap[i &gt;&gt; 6] &amp; (1L &lt;&lt; i)) != 0</tt>,
+   * is set if the value of row i is absent.
+   *
+   * @param curveNo    Curve index. [0,nCurves&gt;.
+   * @param dimension  Dimension index. [0,nDimensions&gt;.
+   * @return           The null bitmap of the column. Never null.
+   * @throws IllegalArgumentException  If curveNo or dimension is out of bounds.
+   */
+  public long[] getNullBitmap(int curveNo, int dimension)
+  {
+    return nullBitmaps_[getColumnNo(curveNo, dimension)];
+  }
+
+  /**
+   * Check if the specified value of this block is absent.
+   *
+   * @param curveNo    Curve index. [0,nCurves&gt;.
+   * @param dimension  Dimension index. [0,nDimensions&gt;.
+   * @param rowNo      Row index. [0,nRows&gt;.
+   * @return           True if the value is absent, false otherwise.
+   * @throws IllegalArgumentException  If curveNo, dimension or rowNo is out of bounds.
+   */
+  public boolean isNull(int curveNo, int dimension, int rowNo)
+  {
+    if (rowNo < 0 || rowNo >= nRows_)
+      throw new IllegalArgumentException("Invalid rowNo: " + rowNo);
+
+    long[] nullBitmap = nullBitmaps_[getColumnNo(curveNo, dimension)];
+    return (nullBitmap[rowNo >> 6] & (1L << rowNo)) != 0;
+  }
+
+  /**
+   * Release this block so that the reader can reuse it for the
+   * next rows. The client must not access the block after this.
+   * If the block is not recycled, the reader creates a new block
+   * for the next rows and the client may keep this one.
+   */
+  public void recycle()
+  {
+    isRecycled_ = true;
+  }
+
+  /**
+   * Check if this block has been released for reuse by the client.
+   *
+   * @return  True if this block is recycled, false otherwise.
+   */
+  boolean isRecycled()
+  {
+    return isRecycled_;
+  }
+
+  /**
+   * Check if this block is full.
+   *
+   * @return  True if this block is full, false otherwise.
+   */
+  boolean isFull()
+  {
+    return nRows_ == capacity_;
+  }
+
+  /**
+   * Remove all rows from this block so that it can be reused.
+   */
+  void clear()
+  {
+    nRows_ = 0;
+    isRecycled_ = false;
+
+    for (long[] nullBitmap : nullBitmaps_)
+      Arrays.fill(nullBitmap, 0L);
+
+    startRow();
+  }
+
+  /**
+   * Prepare the next row of this block. All values of the row
+   * are initially absent.
+   */
+  private void startRow()
+  {
+    if (nRows_ == capacity_)
+      return;
+
+    int wordNo = nRows_ >> 6;
+    long bit = 1L << nRows_;
+
+    for (int columnNo = 0; columnNo < columns_.length; columnNo++) {
+      nullBitmaps_[columnNo][wordNo] |= bit;
+
+      Object column = columns_[columnNo];
+      if (column instanceof double[])
+        ((double[]) column)[nRows_] = Double.NaN;
+      else if (column instanceof float[])
+        ((float[]) column)[nRows_] = Float.NaN;
+      else if (column instanceof int[])
+        ((int[]) column)[nRows_] = 0;
+      else
+        ((Object[]) column)[nRows_] = null;
+    }
+  }
+
+  /**
+   * Complete the current row of this block.
+   */
+  void endRow()
+  {
+    assert nRows_ < capacity_ : "Block is full";
+
+    nRows_++;
+    startRow();
+  }
+
+  /**
+   * Set a numeric value of the current row of this block. The value is
+   * converted to the value type of the curve the same way as when it is
+   * added to a {@link JsonCurve}.
+   *
+   * @param curveNo    Curve index. [0,nCurves&gt;.
+   * @param dimension  Dimension index. [0,nDimensions&gt;.
+   * @param value      Value to set. Double.NaN if absent.
+   * @throws IllegalArgumentException  If curveNo or dimension is out of bounds.
+   */
+  void setDouble(int curveNo, int dimension, double value)
+  {
+    assert nRows_ < capacity_ : "Block is full";
+
+    int columnNo = getColumnNo(curveNo, dimension);
+    Class<?> valueType = valueTypes_[curveNo];
+
+    if (Double.isNaN(value))
+      return;
+
+    if (valueType == Double.class)
+      ((double[]) columns_[columnNo])[nRows_] = value;
+    else if (valueType == Float.class)
+      ((float[]) columns_[columnNo])[nRows_] = (float) value;
+    else if (valueType == Integer.class)
+      ((int[]) columns_[columnNo])[nRows_] = (int) Math.round(value);
+    else {
+      Object v = Util.getAsType(value, valueType);
+      if (v == null)
+        return;
+      ((Object[]) columns_[columnNo])[nRows_] = v;
+    }
+
+    nullBitmaps_[columnNo][nRows_ >> 6] &= ~(1L << nRows_);
+  }
+
+  /**
+   * Set a value of the current row of this block. The value is
+   * converted to the value type of the curve the same way as when it
+   * is added to a {@link JsonCurve}.
+   *
+   * @param curveNo    Curve index. [0,nCurves&gt;.
+   * @param dimension  Dimension index. [0,nDimensions&gt;.
+   * @param value      Value to set. Null if absent.
+   * @throws IllegalArgumentException  If curveNo or dimension is out of bounds.
+   */
+  void setValue(int curveNo, int dimension, Object value)
+  {
+    assert nRows_ < capacity_ : "Block is full";
+
+    int columnNo = getColumnNo(curveNo, dimension);
+    Class<?> valueType = valueTypes_[curveNo];
+
+    Object v = Util.getAsType(value, valueType);
+    if (v == null)
+      return;
+
+    if (valueType == Double.class) {
+      double d = (Double) v;
+      if (Double.isNaN(d))
+        return;
+      ((double[]) columns_[columnNo])[nRows_] = d;
+    }
+    else if (valueType == Float.class) {
+      float f = (Float) v;
+      if (Float.isNaN(f))
+        return;
+      ((float[]) columns_[columnNo])[nRows_] = f;
+    }
+    else if (valueType == Integer.class)
+      ((int[]) columns_[columnNo])[nRows_] = (Integer) v;
+    else
+      ((Object[]) columns_[columnNo])[nRows_] = v;
+
+    nullBitmaps_[columnNo][nRows_ >> 6] &= ~(1L << nRows_);
+  }
+}
@@ -0,0 +1,55 @@
+package no.petroware.logio.json;
+
+/**
+ * Provides a mechanism for the client to process data in blocks
+ * of rows <em>during</em> a JSON read operation, and also to abort
+ * the process in case that is requested by user or for other reasons.
+ * <p>
+ * The rows are passed as primitive arrays per curve dimension rather
+ * than being stored with the curves. By recycling the block, the client
+ * can process JSON content that is larger than physical memory without
+ * any allocations per row:
+ *
+ * <pre>
+ *   class DataBlockListener implements JsonDataBlockListener
+ *   {
+ *      &#64;Override
+ *      public boolean dataRead(JsonLog log, JsonDataBlock dataBlock)
+ *      {
+ *         // Process block data
+ *         :
+ *
+ *         // Let the reader reuse the block
+ *         dataBlock.recycle();
+ *
+ *         // Continue the process
+ *         return true;
+ *      }
+ *    }
+ * </pre>
+ *
+ * @author <a href="mailto:info@petroware.no">Petroware AS</a>
+ */
+public interface JsonDataBlockListener
+{
+  /**
+   * A notification from {@link JsonReader} indicating that a new
+   * block of rows has been read from the specified log.
+   * <p>
+   * Unless the client calls {@link JsonDataBlock#recycle}, the block
+   * is left to the client, and a new block is created for the next rows.
+   * <p>
+   * It is also possible for the client to <em>abort</em> the reading
+   * process at this time, by returning <tt>false</tt> from the method.
+   * This will close all resources and throw an InterruptedException
+   * back to the client.
+   * <p>
+   * @see JsonReader#read(boolean,JsonDataBlockListener,int)
+   *
+   * @param log        Log being read. Holds the curve definitions
+   *                   but no curve values. Never null.
+   * @param dataBlock  The block of rows read. Never null.
+   * @return           True to continue reading, false to abort the process.
+   */
+  public boolean dataRead(JsonLog log, JsonDataBlock dataBlock);
+}
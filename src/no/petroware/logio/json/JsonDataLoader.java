@@ -0,0 +1,81 @@
+package no.petroware.logio.json;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+/**
+ * Loads curve values on demand from the data section of a log
+ * in a JSON Well Log Format file.
+ * <p>
+ * An instance is created per log by the {@link JsonReader} in lazy mode,
+ * and is shared by the curves of the log until their values are loaded.
+ * It keeps the file location of the data section as chunks of rows,
+ * so that the data can be located without reading the file again.
+ *
+ * @author <a href="mailto:info@petroware.no">Petroware AS</a>
+ */
+final class JsonDataLoader
+{
+  /** The reader of the file. Non-null. */
+  private final JsonReader reader_;
+
+  /** The log of the curves to load. Non-null. */
+  private final JsonLog log_;
+
+  /** Start and end file positions of the chunks of the data array. Non-null. */
+  private final List<long[]> chunks_;
+
+  /** True to create statistics as the curve values are loaded. */
+  private final boolean shouldCaptureStatistics_;
+
+  /** Range of index values of the rows to load. Null to load all rows. */
+  private final JsonReader.IndexRange indexRange_;
+
+  /**
+   * Create a data loader for the specified log.
+   *
+   * @param reader                   The reader of the file. Non-null.
+   * @param log                      The log of the curves to load. Non-null.
+   * @param chunks                   Start and end file positions of the chunks
+   *                                 of the data array of the log. Non-null.
+   * @param shouldCaptureStatistics  True to create statistics as the curve
+   *                                 values are loaded, false if not.
+   * @param indexRange               Range of index values of the rows to load.
+   *                                 Null to load all rows.
+   */
+  JsonDataLoader(JsonReader reader, JsonLog log, List<long[]> chunks,
+                 boolean shouldCaptureStatistics,
+                 JsonReader.IndexRange indexRange)
+  {
+    assert reader != null : "reader cannot be null";
+    assert log != null : "log cannot be null";
+    assert chunks != null : "chunks cannot be null";
+
+    reader_ = reader;
+    log_ = log;
+    chunks_ = chunks;
+    shouldCaptureStatistics_ = shouldCaptureStatistics;
+    indexRange_ = indexRange;
+  }
+
+  /**
+   * Load the values of the specified curve.
+   *
+   * @param curve  Curve to load values of. Non-null.
+   * @return       A new curve with the same definition as the specified one,
+   *               populated with its values (and statistics). Never null.
+   * @throws UncheckedIOException  If reading the file fails for some reason.
+   */
+  JsonCurve load(JsonCurve curve)
+  {
+    assert curve != null : "curve cannot be null";
+
+    try {
+      return reader_.readCurve(log_, chunks_, curve, shouldCaptureStatistics_, indexRange_);
+    }
+    catch (IOException exception) {
+      throw new UncheckedIOException(exception);
+    }
+  }
+}
@@ -10,11 +10,11 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
 
-import javax.json.Json;
 import javax.json.JsonObject;
 import javax.json.JsonObjectBuilder;
 import javax.json.JsonValue;
 
+import no.petroware.logio.util.DoubleList;
 import no.petroware.logio.util.Formatter;
 import no.petroware.logio.util.Util;
 
@@ -59,7 +59,7 @@ public final class JsonLog
     this(true); // It has all the curve data that exists (none)
 
     // Default empty header
-    header_ = Json.createObjectBuilder().build();
+    header_ = JsonUtil.createObjectBuilder().build();
   }
 
   /**
@@ -128,7 +128,7 @@ public final class JsonLog
         !(value instanceof JsonValue))
       throw new IllegalArgumentException("Invalid property type: " + value.getClass());
 
-    JsonObjectBuilder objectBuilder = Json.createObjectBuilder();
+    JsonObjectBuilder objectBuilder = JsonUtil.createObjectBuilder();
 
     synchronized (this) {
       header_.forEach(objectBuilder::add);
@@ -693,13 +693,16 @@ public final class JsonLog
   }
 
   /**
-   * Set curve capacity to actual size to save memory.
+   * Set curve capacity to actual size and compress the curve values
+   * where possible to save memory.
    * The assumption is that the curves will not grow any further.
    */
   void trimCurves()
   {
-    for (JsonCurve curve : curves_)
+    for (JsonCurve curve : curves_) {
       curve.trim();
+      curve.compress();
+    }
   }
 
   /**
@@ -781,12 +784,15 @@ public final class JsonLog
    *
    * @param curve         Curve to create formatter for. Non-null.
    * @param isIndexCurve  True if curve is the index curve, false otherwise.
+   * @param nValues       Number of leading non-null values of each curve
+   *                      dimension to base the formatter on. [0,&gt;.
    * @return  A formatter that can be used to write the curve data.
    *                      Null if the log data is not of numeric type.
    */
-  Formatter createFormatter(JsonCurve curve, boolean isIndexCurve)
+  Formatter createFormatter(JsonCurve curve, boolean isIndexCurve, int nValues)
   {
     assert curve != null : "curve cannot be null";
+    assert nValues >= 0 : "Invalid nValues: " + nValues;
 
     Class<?> valueType = curve.getValueType();
 
@@ -794,13 +800,32 @@ public final class JsonLog
       return null;
 
     int nDimensions = curve.getNDimensions();
-    int nValues = curve.getNValues();
+    int nCurveValues = curve.getNValues();
 
-    double[] values = new double[nValues * nDimensions];
+    double[] values;
 
-    for (int index = 0; index < nValues; index++)
+    if (nValues >= nCurveValues) {
+      values = new double[nCurveValues * nDimensions];
       for (int dimension = 0; dimension < nDimensions; dimension++)
-        values[dimension * nValues + index] = Util.getAsDouble(curve.getValue(dimension, index));
+        curve.copyTo(dimension, values, dimension * nCurveValues);
+    }
+
+    // Logs often start with null rows, so these are not part of the sample
+    else {
+      DoubleList sample = new DoubleList();
+      for (int dimension = 0; dimension < nDimensions; dimension++) {
+        int nSampleValues = 0;
+        for (int index = 0; index < nCurveValues && nSampleValues < nValues; index++) {
+          double value = curve.getDouble(dimension, index);
+          if (!Double.isNaN(value)) {
+            sample.add(value);
+            nSampleValues++;
+          }
+        }
+      }
+      values = new double[sample.size()];
+      sample.copyTo(values, 0);
+    }
 
     int nSignificantDigits = isIndexCurve ? getNSignificantDigits(curve, isIndexCurve) : 6;
 
@@ -0,0 +1,378 @@
+package no.petroware.logio.json;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import no.petroware.logio.util.Util;
+
+/**
+ * A cursor for reading the logs of JSON Well Log Format content
+ * row by row, pulling the data rather than having it pushed through
+ * a {@link JsonDataListener}.
+ * <p>
+ * Only a bounded buffer of rows is kept in memory at any time, so
+ * arbitrary large content can be processed, and several cursors can
+ * be advanced side by side, for instance to merge logs by index.
+ * <p>
+ * Typical usage:
+ *
+ * <pre>
+ *   JsonReader reader = new JsonReader(new File("path/to/file.JSON"));
+ *   try (JsonLogCursor cursor = reader.openCursor(1000)) {
+ *     while (cursor.nextLog()) {
+ *       JsonLog log = cursor.getLog();
+ *       while (cursor.next()) {
+ *         double index = cursor.getIndex();
+ *         double value = cursor.getDouble(1);
+ *         :
+ *       }
+ *     }
+ *   }
+ * </pre>
+ *
+ * The logs of the cursor hold the metadata that precedes the data array
+ * in the content, but no curve values. Instances are created through
+ * {@link JsonReader#openCursor}.
+ *
+ * @author <a href="mailto:info@petroware.no">Petroware AS</a>
+ */
+public final class JsonLogCursor
+  implements Closeable
+{
+  /** The reader of the content. Non-null. */
+  private final JsonReader reader_;
+
+  /** The scanner of the content. Non-null. */
+  private final JsonScanner scanner_;
+
+  /** Resource to close with the cursor. Null if managed by the client. */
+  private final Closeable resource_;
+
+  /** Collector of the buffered rows. Non-null. */
+  private final JsonReader.DataBlockCollector dataBlockCollector_;
+
+  /** The current log. Null if before the first or after the last log. */
+  private JsonLog log_ = null;
+
+  /** True if the scanner is positioned within the current log object. */
+  private boolean isInLog_ = false;
+
+  /** True if the scanner is positioned within the data array of the current log. */
+  private boolean isInData_ = false;
+
+  /** The current row within the buffered rows. -1 if no current row. */
+  private int rowNo_ = -1;
+
+  /**
+   * Create a cursor over the content of the specified scanner.
+   *
+   * @param reader      The reader of the content. Non-null.
+   * @param scanner     Scanner positioned at the start of the content. Non-null.
+   * @param resource    Resource to close with the cursor. Null if none.
+   * @param bufferSize  Maximum number of rows to buffer. [1,&gt;.
+   */
+  JsonLogCursor(JsonReader reader, JsonScanner scanner, Closeable resource, int bufferSize)
+  {
+    assert reader != null : "reader cannot be null";
+    assert scanner != null : "scanner cannot be null";
+    assert bufferSize > 0 : "Invalid bufferSize: " + bufferSize;
+
+    reader_ = reader;
+    scanner_ = scanner;
+    resource_ = resource;
+    dataBlockCollector_ = new JsonReader.DataBlockCollector(null, bufferSize);
+  }
+
+  /**
+   * Move the cursor to the next log of the content.
+   * Any remaining rows of the current log are skipped.
+   *
+   * @return  True if the cursor is positioned at a new log,
+   *          false if there are no more logs.
+   * @throws IOException  If the read operation fails for some reason.
+   */
+  public boolean nextLog()
+    throws IOException
+  {
+    // Skip the remains of the current log
+    if (isInData_) {
+      scanner_.skipValue('[');
+      isInData_ = false;
+    }
+
+    while (isInLog_) {
+      isInLog_ = reader_.readLogHead(scanner_, log_);
+      if (isInLog_)
+        scanner_.skipValue('[');
+    }
+
+    log_ = null;
+    rowNo_ = -1;
+
+    while (true) {
+      int b = scanner_.nextNonSpace();
+
+      if (b == ']' || b == -1)
+        return false;
+
+      if (b == '{') {
+        log_ = new JsonLog();
+        isInData_ = reader_.readLogHead(scanner_, log_);
+        isInLog_ = isInData_;
+
+        dataBlockCollector_.startLog(log_);
+        return true;
+      }
+
+      if (b != '[' && b != ',')
+        scanner_.skipValue(b);
+    }
+  }
+
+  /**
+   * Return the current log of this cursor.
+   *
+   * @return  The current log. Holds the curve definitions but no
+   *          curve values. Null if the cursor is not positioned at a log.
+   */
+  public JsonLog getLog()
+  {
+    return log_;
+  }
+
+  /**
+   * Move the cursor to the next row of the current log.
+   *
+   * @return  True if the cursor is positioned at a new row,
+   *          false if there are no more rows in the current log.
+   * @throws IOException  If the read operation fails for some reason.
+   */
+  public boolean next()
+    throws IOException
+  {
+    if (log_ == null)
+      return false;
+
+    if (rowNo_ + 1 < dataBlockCollector_.getDataBlock().getNRows()) {
+      rowNo_++;
+      return true;
+    }
+
+    return nextBlock();
+  }
+
+  /**
+   * Move the cursor to the first row of the next block of rows of
+   * the current log. Any remaining rows of the current block are
+   * skipped. The block is available through {@link #getDataBlock}
+   * for processing the rows in bulk.
+   *
+   * @return  True if the cursor is positioned at a new block,
+   *          false if there are no more rows in the current log.
+   * @throws IOException  If the read operation fails for some reason.
+   */
+  public boolean nextBlock()
+    throws IOException
+  {
+    rowNo_ = -1;
+
+    if (log_ == null)
+      return false;
+
+    while (isInData_) {
+      isInData_ = reader_.readDataBlock(scanner_, log_, dataBlockCollector_);
+
+      if (dataBlockCollector_.getDataBlock().getNRows() > 0) {
+        rowNo_ = 0;
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * Return the block of the buffered rows of this cursor.
+   * The block is reused as the cursor is advanced, and the client
+   * should not keep or recycle it.
+   *
+   * @return  The block of the buffered rows. Null if the cursor
+   *          is not positioned at a log.
+   */
+  public JsonDataBlock getDataBlock()
+  {
+    return log_ != null ? dataBlockCollector_.getDataBlock() : null;
+  }
+
+  /**
+   * Return the current row within the block of buffered rows.
+   *
+   * @return  The current row within the block. -1 if the cursor
+   *          is not positioned at a row.
+   */
+  public int getRowNo()
+  {
+    return rowNo_;
+  }
+
+  /**
+   * Return the block of the buffered rows, checking that the
+   * cursor is positioned at a row.
+   *
+   * @return  The block of the buffered rows. Never null.
+   * @throws IllegalStateException  If the cursor is not positioned at a row.
+   */
+  private JsonDataBlock getRowDataBlock()
+  {
+    if (rowNo_ < 0)
+      throw new IllegalStateException("Cursor is not positioned at a row");
+
+    return dataBlockCollector_.getDataBlock();
+  }
+
+  /**
+   * Check if the specified value of the current row is absent.
+   *
+   * @param curveNo    Curve index. [0,nCurves&gt;.
+   * @param dimension  Dimension index. [0,nDimensions&gt;.
+   * @return           True if the value is absent, false otherwise.
+   * @throws IllegalArgumentException  If curveNo or dimension is out of bounds.
+   * @throws IllegalStateException  If the cursor is not positioned at a row.
+   */
+  public boolean isNull(int curveNo, int dimension)
+  {
+    return getRowDataBlock().isNull(curveNo, dimension, rowNo_);
+  }
+
+  /**
+   * Return the specified value of the current row as a double.
+   *
+   * @param curveNo    Curve index. [0,nCurves&gt;.
+   * @param dimension  Dimension index. [0,nDimensions&gt;.
+   * @return           The requested value. Double.NaN if absent
+   *                   or not convertible to a number.
+   * @throws IllegalArgumentException  If curveNo or dimension is out of bounds.
+   * @throws IllegalStateException  If the cursor is not positioned at a row.
+   */
+  public double getDouble(int curveNo, int dimension)
+  {
+    JsonDataBlock dataBlock = getRowDataBlock();
+
+    if (dataBlock.isNull(curveNo, dimension, rowNo_))
+      return Double.NaN;
+
+    double[] doubleValues = dataBlock.getDoubleValues(curveNo, dimension);
+    if (doubleValues != null)
+      return doubleValues[rowNo_];
+
+    float[] floatValues = dataBlock.getFloatValues(curveNo, dimension);
+    if (floatValues != null)
+      return floatValues[rowNo_];
+
+    int[] intValues = dataBlock.getIntValues(curveNo, dimension);
+    if (intValues != null)
+      return intValues[rowNo_];
+
+    return Util.getAsDouble(dataBlock.getObjectValues(curveNo, dimension)[rowNo_]);
+  }
+
+  /**
+   * Return the value of the specified one-dimensional curve of the
+   * current row as a double.
+   *
+   * @param curveNo  Curve index. [0,nCurves&gt;.
+   * @return         The requested value. Double.NaN if absent
+   *                 or not convertible to a number.
+   * @throws IllegalArgumentException  If curveNo is out of bounds.
+   * @throws IllegalStateException  If the cursor is not positioned at a row.
+   */
+  public double getDouble(int curveNo)
+  {
+    return getDouble(curveNo, 0);
+  }
+
+  /**
+   * Return the index value of the current row, i.e.&nbsp;the
+   * value of the first curve as a double.
+   *
+   * @return  The index value of the current row. Double.NaN if absent.
+   * @throws IllegalStateException  If the cursor is not positioned at a row.
+   */
+  public double getIndex()
+  {
+    return getDouble(0, 0);
+  }
+
+  /**
+   * Return the specified value of the current row.
+   *
+   * @param curveNo    Curve index. [0,nCurves&gt;.
+   * @param dimension  Dimension index. [0,nDimensions&gt;.
+   * @return           The requested value of the value type of
+   *                   the curve. Null if absent.
+   * @throws IllegalArgumentException  If curveNo or dimension is out of bounds.
+   * @throws IllegalStateException  If the cursor is not positioned at a row.
+   */
+  public Object getValue(int curveNo, int dimension)
+  {
+    JsonDataBlock dataBlock = getRowDataBlock();
+
+    if (dataBlock.isNull(curveNo, dimension, rowNo_))
+      return null;
+
+    double[] doubleValues = dataBlock.getDoubleValues(curveNo, dimension);
+    if (doubleValues != null)
+      return doubleValues[rowNo_];
+
+    float[] floatValues = dataBlock.getFloatValues(curveNo, dimension);
+    if (floatValues != null)
+      return floatValues[rowNo_];
+
+    int[] intValues = dataBlock.getIntValues(curveNo, dimension);
+    if (intValues != null)
+      return intValues[rowNo_];
+
+    return dataBlock.getObjectValues(curveNo, dimension)[rowNo_];
+  }
+
+  /**
+   * Return the value of the specified one-dimensional curve of the
+   * current row.
+   *
+   * @param curveNo  Curve index. [0,nCurves&gt;.
+   * @return         The requested value of the value type of
+   *                 the curve. Null if absent.
+   * @throws IllegalArgumentException  If curveNo is out of bounds.
+   * @throws IllegalStateException  If the cursor is not positioned at a row.
+   */
+  public Object getValue(int curveNo)
+  {
+    return getValue(curveNo, 0);
+  }
+
+  /**
+   * Close this cursor and release its resources. An input stream
+   * passed to the reader by the client is not closed.
+   *
+   * @throws IOException  If closing the resources fails for some reason.
+   */
+  @Override
+  public void close()
+    throws IOException
+  {
+    log_ = null;
+    rowNo_ = -1;
+    isInLog_ = false;
+    isInData_ = false;
+
+    if (resource_ != null)
+      resource_.close();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public String toString()
+  {
+    return "Cursor: " + (log_ != null ? log_.getName() : "-") + " row " + rowNo_;
+  }
+}
@@ -1,12 +1,20 @@
 package no.petroware.logio.json;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Predicate;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -15,6 +23,9 @@ import javax.json.JsonObject;
 import javax.json.JsonObjectBuilder;
 import javax.json.stream.JsonParser;
 
+import no.petroware.logio.util.DoubleList;
+import no.petroware.logio.util.MappedFile;
+import no.petroware.logio.util.MemoryMode;
 import no.petroware.logio.util.Util;
 
 /**
@@ -41,10 +52,19 @@ import no.petroware.logio.util.Util;
  * are properly established as this information comes from metadata.
  * Only the curve <em>values</em> will be missing.
  * <p>
+ * Large files on local disks may be read faster by memory mapping
+ * them, see {@link #JsonReader(File,boolean)}.
+ * <p>
+ * Clients that access only a few of the curves of a file may read
+ * the curve values on demand, see {@link #setLazy}.
+ * <p>
  * If the JSON content is larger than physical memory, it is possible
  * to <em>stream</em> (process than throw away) the data during read.
  * See {@link JsonDataListener}. The same mechanism may be used
  * to <em>abort</em> the reading process during the operation.
+ * Alternatively the data can be passed to the client in blocks of
+ * rows as primitive arrays, see {@link JsonDataBlockListener}, or
+ * pulled by the client row by row, see {@link JsonLogCursor}.
  *
  * @author <a href="mailto:info@petroware.no">Petroware AS</a>
  */
@@ -53,25 +73,249 @@ public final class JsonReader
   /** The logger instance. */
   private static final Logger logger_ = Logger.getLogger(JsonReader.class.getName());
 
+  /** Approximate size (4MB) of each chunk of the data section during parallel read. */
+  private static final long DATA_CHUNK_SIZE = 1L << 22;
+
+  /** Maximum number of values (4M) across all curves of a log to make room for up front. */
+  private static final long MAX_PREDICTED_NVALUES = 1L << 22;
+
+  /** Minimum number of bytes of each value of a data row in the file, i.e. a digit and a comma. */
+  private static final int MIN_BYTES_PER_VALUE = 2;
+
+  /**
+   * Range of index values of the rows to read.
+   */
+  static final class IndexRange
+  {
+    /** Minimum index value of the range. Negative infinity if no limit. */
+    private final double minIndex_;
+
+    /** Maximum index value of the range. Positive infinity if no limit. */
+    private final double maxIndex_;
+
+    /**
+     * Create an index range.
+     *
+     * @param startIndex  Start of the index range. Null for no limit.
+     * @param endIndex    End of the index range. Null for no limit.
+     */
+    IndexRange(Double startIndex, Double endIndex)
+    {
+      double index0 = startIndex != null ? startIndex : Double.NEGATIVE_INFINITY;
+      double index1 = endIndex != null ? endIndex : Double.POSITIVE_INFINITY;
+
+      minIndex_ = Math.min(index0, index1);
+      maxIndex_ = Math.max(index0, index1);
+    }
+
+    /**
+     * Check if the specified index value is within this range.
+     *
+     * @param index  Index value to check. Double.NaN if absent.
+     * @return       True if the index value is within this range, false otherwise.
+     */
+    boolean contains(double index)
+    {
+      return index >= minIndex_ && index <= maxIndex_;
+    }
+
+    /**
+     * Check if the specified index value is before this range.
+     *
+     * @param index      Index value to check.
+     * @param direction  Direction of the index, 1 if increasing, -1 if
+     *                   decreasing and 0 if not known.
+     * @return           True if the index value is before this range, false otherwise.
+     */
+    boolean isBefore(double index, int direction)
+    {
+      return direction > 0 ? index < minIndex_ : direction < 0 && index > maxIndex_;
+    }
+
+    /**
+     * Check if the specified index value is after this range.
+     *
+     * @param index      Index value to check.
+     * @param direction  Direction of the index, 1 if increasing, -1 if
+     *                   decreasing and 0 if not known.
+     * @return           True if the index value is after this range, false otherwise.
+     */
+    boolean isAfter(double index, int direction)
+    {
+      return direction > 0 ? index > maxIndex_ : direction < 0 && index < minIndex_;
+    }
+  }
+
+  /**
+   * Collects the values of the data rows in blocks and passes
+   * each full block on to a client block listener. Without a
+   * listener the reading pauses when the block is full, so that
+   * the client can pull the rows.
+   */
+  static final class DataBlockCollector
+  {
+    /** The client listener. Null if the client pulls the rows. */
+    private final JsonDataBlockListener dataBlockListener_;
+
+    /** Maximum number of rows per block. [1,&gt;. */
+    private final int blockSize_;
+
+    /** The log currently being read. Null if not started. */
+    private JsonLog log_;
+
+    /** The block currently being populated. Null if not started. */
+    private JsonDataBlock dataBlock_;
+
+    /**
+     * Create a data block collector.
+     *
+     * @param dataBlockListener  The client listener. Null if the client pulls the rows.
+     * @param blockSize          Maximum number of rows per block. [1,&gt;.
+     */
+    DataBlockCollector(JsonDataBlockListener dataBlockListener, int blockSize)
+    {
+      assert blockSize > 0 : "Invalid blockSize: " + blockSize;
+
+      dataBlockListener_ = dataBlockListener;
+      blockSize_ = blockSize;
+    }
+
+    /**
+     * Start collecting the data rows of the specified log.
+     *
+     * @param log  Log to collect data of. Non-null.
+     */
+    void startLog(JsonLog log)
+    {
+      assert log != null : "log cannot be null";
+
+      log_ = log;
+      dataBlock_ = new JsonDataBlock(log.getCurves(), blockSize_);
+    }
+
+    /**
+     * Return the block currently being populated.
+     *
+     * @return  The block currently being populated. Never null.
+     */
+    JsonDataBlock getDataBlock()
+    {
+      assert dataBlock_ != null : "Log not started";
+      return dataBlock_;
+    }
+
+    /**
+     * Complete the current row, and pass the block on to the
+     * listener if it is full.
+     *
+     * @return  True to continue reading, false if the client aborts.
+     */
+    boolean endRow()
+    {
+      dataBlock_.endRow();
+      return dataBlockListener_ == null || !dataBlock_.isFull() || notifyListener();
+    }
+
+    /**
+     * Pass the remaining rows on to the listener.
+     *
+     * @return  True to continue reading, false if the client aborts.
+     */
+    boolean flush()
+    {
+      return dataBlockListener_ == null || dataBlock_.getNRows() == 0 || notifyListener();
+    }
+
+    /**
+     * Pass the current block on to the client and prepare a
+     * block for the next rows.
+     *
+     * @return  True to continue reading, false if the client aborts.
+     */
+    private boolean notifyListener()
+    {
+      boolean shouldContinue = dataBlockListener_.dataRead(log_, dataBlock_);
+
+      // Reuse the block if the client is done with it
+      if (dataBlock_.isRecycled())
+        dataBlock_.clear();
+      else
+        dataBlock_ = new JsonDataBlock(log_.getCurves(), blockSize_);
+
+      return shouldContinue;
+    }
+  }
+
   /** The file to read. Null if read directly from stream. */
   private final File file_;
 
   /** The stream to be read. Null if read from file. */
   private final InputStream inputStream_;
 
+  /** True if the file is memory mapped during read, false if it is streamed. */
+  private final boolean isMemoryMapped_;
+
+  /** True if logs should be read in parallel, false to read sequentially. */
+  private boolean isParallel_ = false;
+
+  /** True if curve values should be read on demand, false to read them up front. */
+  private boolean isLazy_ = false;
+
+  /** Range of index values of the rows to read. Null to read all rows. */
+  private IndexRange indexRange_ = null;
+
+  /** Where the curve values of the logs read are kept. Non-null. */
+  private MemoryMode memoryMode_ = MemoryMode.HEAP;
+
+  /** File shared by the curves of a read in file mapped mode. Closed after each read. */
+  private final MappedFile mappedFile_ = new MappedFile();
+
+  /** Relative tolerance of float curves kept in single precision. Null if not used. */
+  private Double singlePrecisionTolerance_ = null;
+
+  /** Filter for the curves to keep in single precision. Null for all. */
+  private Predicate<JsonCurve> singlePrecisionFilter_ = null;
+
   /**
    * Create a JSON reader for the specified file instance.
    * The actual reading is done with the read() or readData() methods.
+   * <p>
+   * With memory mapping the file content is parsed directly from
+   * the mapped file regions instead of going through a file stream.
+   * This is typically faster for large files on local disks. The
+   * result is identical in both cases. Note that the mapped regions
+   * are not released until they are garbage collected, which on some
+   * platforms will keep the file locked for some time after the read.
    *
-   * @param file  File to read. Non-null.
+   * @param file             File to read. Non-null.
+   * @param isMemoryMapped   True to memory map the file during read,
+   *                         false to read it as a stream.
    * @throws IllegalArgumentException  If file is null.
    * @see #read
    * @see #readData
    */
-  public JsonReader(File file)
+  public JsonReader(File file, boolean isMemoryMapped)
   {
+    if (file == null)
+      throw new IllegalArgumentException("file cannot be null");
+
     file_ = file;
     inputStream_ = null;
+    isMemoryMapped_ = isMemoryMapped;
+  }
+
+  /**
+   * Create a JSON reader for the specified file instance.
+   * The actual reading is done with the read() or readData() methods.
+   *
+   * @param file  File to read. Non-null.
+   * @throws IllegalArgumentException  If file is null.
+   * @see #read
+   * @see #readData
+   */
+  public JsonReader(File file)
+  {
+    this(file, false);
   }
 
   /**
@@ -90,6 +334,137 @@ public final class JsonReader
   {
     file_ = null;
     inputStream_ = inputStream;
+    isMemoryMapped_ = false;
+  }
+
+  /**
+   * Specify if logs should be read in parallel.
+   * <p>
+   * A JSON Well Log Format file is an array of independent logs. In parallel
+   * mode a fast structural scan first locates each log in the file, and
+   * the logs are then read concurrently on the common fork-join pool.
+   * Likewise, the data section of each log is split into chunks of rows
+   * that are read concurrently and then joined. The result is identical
+   * to that of a sequential read.
+   * <p>
+   * Parallel reading applies to file input only, and is not used if
+   * a {@link JsonDataListener} is specified for the read operation
+   * as the listener is notified sequentially. Default is false.
+   *
+   * @param isParallel  True to read in parallel, false to read sequentially.
+   */
+  public void setParallel(boolean isParallel)
+  {
+    isParallel_ = isParallel;
+  }
+
+  /**
+   * Specify if curve values should be read on demand.
+   * <p>
+   * In lazy mode, reading bulk data only records the location of the
+   * data section of each log in the file. The values of a curve are
+   * then read from the file the first time they are accessed, and only
+   * the values of that curve are read. This is useful for clients that
+   * access only a few of the curves of a file, but is slower than
+   * a regular read if all curves are eventually accessed. If requested,
+   * statistics are created as the curve values are read.
+   * <p>
+   * The reader instance is kept by the logs for as long as there are curve
+   * values to load, and the file must remain unchanged during this period.
+   * If reading the file fails as curve values are accessed, an
+   * {@link java.io.UncheckedIOException} is thrown.
+   * <p>
+   * Lazy mode applies to file input only, and is not used if
+   * a {@link JsonDataListener} is specified for the read operation.
+   * Default is false.
+   *
+   * @param isLazy  True to read curve values on demand, false to read
+   *                them up front.
+   */
+  public void setLazy(boolean isLazy)
+  {
+    isLazy_ = isLazy;
+  }
+
+  /**
+   * Specify the range of index values of the rows to read.
+   * <p>
+   * Only the rows where the value of the index curve (the first curve)
+   * is within the range are stored, and statistics are created from these
+   * rows only. The index is assumed to be monotonic, so reading a data
+   * section stops as soon as the range has been passed. When reading from
+   * file in parallel or lazy mode, the parts of the data section before
+   * the range are also skipped without being read. Note that the log
+   * headers are not changed.
+   * <p>
+   * The range is inclusive and the limits may be given in either order.
+   * For time based logs the index values are milliseconds since the epoch.
+   * Default is to read all rows.
+   *
+   * @param startIndex  Start of the index range. Null for no limit.
+   * @param endIndex    End of the index range. Null for no limit.
+   */
+  public void setIndexRange(Double startIndex, Double endIndex)
+  {
+    indexRange_ = startIndex != null || endIndex != null ? new IndexRange(startIndex, endIndex) : null;
+  }
+
+  /**
+   * Specify where the curve values of the logs read are kept.
+   * <p>
+   * The segmented mode avoids copying large arrays as the curves grow,
+   * and the off-heap modes make it possible to read logs that are larger
+   * than the Java heap. These apply to curves of type double, float and
+   * integer only. The curve values are accessed through the regular
+   * {@link JsonCurve} API in all modes, and the mode of individual
+   * curves may be changed after the read by {@link JsonCurve#setMemoryMode}.
+   * Default is {@link MemoryMode#HEAP}.
+   *
+   * @param memoryMode  Where to keep the curve values. Non-null.
+   * @throws IllegalArgumentException  If memoryMode is null.
+   */
+  public void setMemoryMode(MemoryMode memoryMode)
+  {
+    if (memoryMode == null)
+      throw new IllegalArgumentException("memoryMode cannot be null");
+
+    memoryMode_ = memoryMode;
+  }
+
+  /**
+   * Specify that the values of float curves of the logs read should be
+   * kept as 32-bit floats rather than doubles, which halves the memory
+   * use of these curves.
+   * <p>
+   * The index curve of each log is always kept as doubles. Any other
+   * curve reverts to doubles as soon as a value is read that is not
+   * within the specified relative tolerance of its float representation.
+   * See {@link JsonCurve#setSinglePrecision}.
+   *
+   * @param tolerance    Largest relative difference between a value and its
+   *                     float representation, such as 1.0e-6. [0,&gt;. Null to
+   *                     keep values as doubles, the default.
+   * @param curveFilter  Filter for the curves to keep in single precision.
+   *                     Null for all float curves.
+   * @throws IllegalArgumentException  If tolerance is negative or Double.NaN.
+   */
+  public void setSinglePrecision(Double tolerance, Predicate<JsonCurve> curveFilter)
+  {
+    if (tolerance != null && (tolerance.isNaN() || tolerance < 0.0))
+      throw new IllegalArgumentException("Invalid tolerance: " + tolerance);
+
+    singlePrecisionTolerance_ = tolerance;
+    singlePrecisionFilter_ = curveFilter;
+  }
+
+  /**
+   * Return a name of the content of this reader for messages.
+   *
+   * @return  Name of the content of this reader. Never null.
+   */
+  private String getName()
+  {
+    return file_ != null ? file_.getPath() : inputStream_.toString();
   }
 
   /**
@@ -129,121 +504,628 @@ public final class JsonReader
   }
 
   /**
-   * Read curve data from the current location in the JSON parser.
+   * Read curve data from the current location of the JSON scanner.
+   * <p>
+   * The data section is read directly from bytes by the scanner rather
+   * than through javax.json. It is by far the largest part of
+   * a JSON Well Log Format file, and its regularity makes this a lot faster.
    *
-   * @param jsonParser               The JSON parser. Non-null.
-   * @param log                      The log to populate with data. Non-null.
+   * @param scanner                  The JSON scanner positioned after the
+   *                                 opening bracket of the data array, or
+   *                                 at the start of a row. Non-null.
+   * @param log                      The log being read. Non-null.
+   * @param curves                   The curves to populate with data, one entry per
+   *                                 curve of the log and in the same order. Typically
+   *                                 the curves of the log itself. Entries are null for
+   *                                 curves that should not be read. Non-null.
    * @param shouldReadBulkData       True if bulk data should be stored, false if not.
    * @param shouldCaptureStatistics  True to create statistics from the bulk data,
    *                                 false if not.
+   * @param statisticsValues         If the scanner holds a chunk of rows of the data
+   *                                 array that is read out of order, the values to
+   *                                 create statistics from are collected here per
+   *                                 curve instead, as statistics must be created in
+   *                                 order. Null to create the statistics directly.
+   * @param indexRange               Range of index values of the rows to read.
+   *                                 Null to read all rows.
    * @param dataListener             Listener that will be notified when new data has
    *                                 been read. Null if not used.
-   *
+   * @param dataBlockCollector       Collector of the values of the rows in blocks
+   *                                 for a block listener. Null if not used.
+   * @return  True if the data was read to the closing bracket of the data array,
+   *          false if the content ended between two rows, if reading stopped
+   *          after the rows within the index range, or if the block of a
+   *          collector without a listener is full.
+   * @throws IOException  If the read operation fails for some reason.
+   * @throws InterruptedException  If the client returns <tt>false</tt> from
+   *                                 the {@link JsonDataListener#dataRead} or
+   *                                 {@link JsonDataBlockListener#dataRead} method.
    */
-  private void readData(JsonParser jsonParser, JsonLog log,
-                        boolean shouldReadBulkData,
-                        boolean shouldCaptureStatistics,
-                        JsonDataListener dataListener)
-    throws InterruptedException
+  private boolean readData(JsonScanner scanner, JsonLog log,
+                           List<JsonCurve> curves,
+                           boolean shouldReadBulkData,
+                           boolean shouldCaptureStatistics,
+                           DoubleList[] statisticsValues,
+                           IndexRange indexRange,
+                           JsonDataListener dataListener,
+                           DataBlockCollector dataBlockCollector)
+    throws IOException, InterruptedException
   {
-    assert jsonParser != null : "jsonParser cannot be null";
+    assert scanner != null : "scanner cannot be null";
     assert log != null : "log cannot be null";
+    assert curves != null && curves.size() == log.getNCurves() : "Invalid curves";
+
+    List<JsonCurve> logCurves = log.getCurves();
+    int nCurves = logCurves.size();
+
+    boolean isReadingValues = shouldReadBulkData || shouldCaptureStatistics || dataBlockCollector != null;
 
     int curveNo = 0;
     int dimension = 0;
-    // int nDimensions;
 
-    int level = 0;
+    int level = 1;
 
-    while (jsonParser.hasNext()) {
-      JsonParser.Event parseEvent = jsonParser.next();
+    // Index range state: If the current row should be read,
+    // the previous index value and the direction of the index
+    boolean isRowIncluded = true;
+    double previousIndex = Double.NaN;
+    int direction = 0;
 
-      if (parseEvent == JsonParser.Event.START_ARRAY) {
-        dimension = 0;
-        level++;
-      }
+    while (true) {
+      int b = scanner.nextNonSpace();
 
-      else if (parseEvent == JsonParser.Event.END_ARRAY) {
+      switch (b) {
+        case ',' :
+          break;
 
-        level--;
+        case '[' :
+          dimension = 0;
+          level++;
+          break;
+
+        case ']' :
+          level--;
+
+          //
+          // If we get to level 0 we are all done
+          //
+          if (level == 0)
+            return true;
+
+          //
+          // If at level 1 we have reached end of one row
+          //
+          if (level == 1) {
+            curveNo = 0;
+            dimension = 0;
+
+            if (dataListener != null && isRowIncluded) {
+              boolean shouldContinue = dataListener.dataRead(log);
+              if (!shouldContinue)
+                throw new InterruptedException("Reading aborted by client: " + getName());
+            }
+
+            if (dataBlockCollector != null && isRowIncluded) {
+              boolean shouldContinue = dataBlockCollector.endRow();
+              if (!shouldContinue)
+                throw new InterruptedException("Reading aborted by client: " + getName());
+
+              // The client pulls the rows when the block is full
+              if (dataBlockCollector.getDataBlock().isFull())
+                return false;
+            }
+
+            isRowIncluded = true;
+          }
 
-        //
-        // If we get to level 0 we are all done. Validate the metadata index
-        //
-        if (level == 0)
-          return;
+          //
+          // Otherwise we have reached the end of a n-dim curve
+          //
+          else {
+            curveNo++;
+            dimension = 0;
+          }
+          break;
 
-        //
-        // If at level 1 we have reached end of one row
-        //
-        if (level == 1) {
-          curveNo = 0;
-          dimension = 0;
+        case -1 :
+          // A chunk of rows ends between two rows
+          if (level == 1)
+            return false;
 
-          if (dataListener != null) {
-            boolean shouldContinue = dataListener.dataRead(log);
-            if (!shouldContinue)
-              throw new InterruptedException("Reading aborted by client: " + file_.getPath());
+          throw scanner.newException("Unexpected end of data");
+
+        case '{' :
+        case '}' :
+        case ':' :
+          throw scanner.newException("Unrecognized token in curve data: " + (char) b);
+
+        default :
+          if (!isReadingValues || curveNo >= nCurves) {
+            scanner.skipValue(b);
+            break;
           }
-        }
 
-        //
-        // Otherwise we have reached the end of a n-dim curve
-        //
-        else {
-          curveNo++;
-          dimension = 0;
-        }
+          JsonCurve curve = logCurves.get(curveNo);
+          JsonCurve targetCurve = isRowIncluded ? curves.get(curveNo) : null;
+
+          // The index value is always needed if an index range is given
+          boolean isIndexValue = indexRange != null && curveNo == 0 && dimension == 0;
+
+          //
+          // Values of curves that are not to be read are skipped
+          //
+          if (targetCurve == null && !isIndexValue) {
+            scanner.skipValue(b);
+          }
+
+          else {
+            //
+            // Numbers are by far the most common and are passed on as primitives
+            //
+            boolean isNumber = b != '"' && b != 'n' && b != 't' && b != 'f';
+
+            double number = Double.NaN;
+            Object value = null;
+
+            if (isNumber) {
+              number = scanner.readNumber(b);
+            }
+            else if (b == '"') {
+              value = scanner.readString();
+            }
+            else if (b == 't') {
+              scanner.expect("true");
+              value = Boolean.TRUE;
+            }
+            else if (b == 'f') {
+              scanner.expect("false");
+              value = Boolean.FALSE;
+            }
+            else {
+              scanner.expect("null");
+            }
+
+            //
+            // Check the index value against the index range
+            //
+            if (isIndexValue) {
+              double index = isNumber ? number : Util.getAsDouble(Util.getAsType(value, curve.getValueType()));
+
+              if (!Double.isNaN(index)) {
+                if (direction == 0 && !Double.isNaN(previousIndex) && index != previousIndex)
+                  direction = index > previousIndex ? 1 : -1;
+                previousIndex = index;
+
+                // The index is monotonic, so there is no more to read
+                if (indexRange.isAfter(index, direction)) {
+                  skipRow(scanner, level);
+                  return false;
+                }
+              }
+
+              isRowIncluded = indexRange.contains(index);
+              if (!isRowIncluded)
+                targetCurve = null;
+            }
+
+            if (targetCurve != null) {
+              if (shouldCaptureStatistics) {
+                double statisticsValue = isNumber ? number : Util.getAsDouble(value);
+                if (statisticsValues != null)
+                  statisticsValues[curveNo].add(statisticsValue);
+                else
+                  targetCurve.getStatistics().push(statisticsValue);
+              }
+
+              // The curve does the type conversion
+              if (shouldReadBulkData) {
+                if (isNumber)
+                  targetCurve.addDouble(dimension, number);
+                else
+                  targetCurve.addValue(dimension, value);
+              }
+
+              // The block does the same type conversion
+              if (dataBlockCollector != null) {
+                if (isNumber)
+                  dataBlockCollector.getDataBlock().setDouble(curveNo, dimension, number);
+                else
+                  dataBlockCollector.getDataBlock().setValue(curveNo, dimension, value);
+              }
+            }
+          }
+
+          // Move on to the next curve or dimension
+          if (curve.getNDimensions() == 1) {
+            curveNo++;
+            dimension = 0;
+          }
+          else {
+            dimension++;
+          }
       }
+    }
+  }
 
-      else if (parseEvent == JsonParser.Event.START_OBJECT) {
-        logger_.log(Level.SEVERE, "Unrecognized event in curve data: " + parseEvent + ". Aborting.");
-        return;
+  /**
+   * Skip the remaining values of the current row of a data array.
+   *
+   * @param scanner  The JSON scanner positioned within a row. Non-null.
+   * @param level    The current nesting level, where 1 is the level
+   *                 of the data array. [2,&gt;.
+   * @throws IOException  If the read operation fails for some reason.
+   */
+  private static void skipRow(JsonScanner scanner, int level)
+    throws IOException
+  {
+    assert scanner != null : "scanner cannot be null";
+    assert level >= 2 : "Invalid level: " + level;
+
+    while (level > 1) {
+      int b = scanner.nextNonSpace();
+
+      if (b == -1)
+        throw scanner.newException("Unexpected end of data");
+
+      if (b == '[')
+        level++;
+      else if (b == ']')
+        level--;
+      else if (b != ',')
+        scanner.skipValue(b);
+    }
+  }
+
+  /**
+   * Find the file regions of the chunks of rows of the data array of
+   * the content of the specified scanner.
+   *
+   * @param scanner  The JSON scanner positioned after the opening bracket
+   *                 of the data array. On return it is positioned after
+   *                 the closing bracket. Non-null.
+   * @return         Start and end file positions of each chunk. The last chunk
+   *                 includes the closing bracket of the data array. Never null.
+   * @throws IOException  If the read operation fails for some reason.
+   */
+  private static List<long[]> findDataChunks(JsonScanner scanner)
+    throws IOException
+  {
+    assert scanner != null : "scanner cannot be null";
+
+    List<long[]> chunks = new ArrayList<>();
+
+    long chunkStartPosition = scanner.getPosition();
+
+    while (true) {
+      int b = scanner.nextNonSpace();
+
+      if (b == -1)
+        throw scanner.newException("Unexpected end of data");
+
+      if (b == ']') {
+        chunks.add(new long[] {chunkStartPosition, scanner.getPosition()});
+        return chunks;
       }
 
-      else if (parseEvent == JsonParser.Event.END_OBJECT) {
-        logger_.log(Level.SEVERE, "Unrecognized event in curve data: " + parseEvent + ". Aborting.");
-        return;
+      if (b == ',')
+        continue;
+
+      // Chunks are split at the start of a row
+      if (b == '[') {
+        long rowStartPosition = scanner.getPosition() - 1;
+        if (rowStartPosition - chunkStartPosition >= DATA_CHUNK_SIZE) {
+          chunks.add(new long[] {chunkStartPosition, rowStartPosition});
+          chunkStartPosition = rowStartPosition;
+        }
       }
 
-      else if (parseEvent == JsonParser.Event.KEY_NAME) {
-        logger_.log(Level.SEVERE, "Unrecognized event in curve data: " + parseEvent + ". Aborting.");
-        return;
+      scanner.skipValue(b);
+    }
+  }
+
+  /**
+   * Read the first index value of the specified chunk of a data array.
+   *
+   * @param scanner     The JSON scanner of the chunk. Non-null.
+   * @param indexCurve  The index curve of the log. Non-null.
+   * @return            The first index value of the chunk.
+   *                    Double.NaN if absent or not available.
+   * @throws IOException  If the read operation fails for some reason.
+   */
+  private static double readFirstIndex(JsonScanner scanner, JsonCurve indexCurve)
+    throws IOException
+  {
+    assert scanner != null : "scanner cannot be null";
+    assert indexCurve != null : "indexCurve cannot be null";
+
+    if (scanner.nextNonSpace() != '[')
+      return Double.NaN;
+
+    int b = scanner.nextNonSpace();
+
+    if (b == '-' || b >= '0' && b <= '9')
+      return scanner.readNumber(b);
+
+    if (b == '"')
+      return Util.getAsDouble(Util.getAsType(scanner.readString(), indexCurve.getValueType()));
+
+    return Double.NaN;
+  }
+
+  /**
+   * Return the chunks of a data array that may contain rows within
+   * the specified index range.
+   * <p>
+   * The first index value of each chunk makes a sparse index of the
+   * data array. As the index is monotonic, this is used to skip the chunks
+   * before and after the index range without reading them.
+   *
+   * @param scanner     A JSON scanner of the file. Non-null.
+   * @param chunks      Chunks of the data array as returned by
+   *                    {@link #findDataChunks}. Non-null.
+   * @param log         The log of the data array. Non-null.
+   * @param indexRange  Range of index values of the rows to read.
+   *                    Null to read all rows.
+   * @return            The consecutive chunks that may contain rows within
+   *                    the index range. Never null.
+   * @throws IOException  If the read operation fails for some reason.
+   */
+  private static List<long[]> selectDataChunks(JsonScanner scanner, List<long[]> chunks,
+                                               JsonLog log, IndexRange indexRange)
+    throws IOException
+  {
+    assert scanner != null : "scanner cannot be null";
+    assert chunks != null : "chunks cannot be null";
+    assert log != null : "log cannot be null";
+
+    int nChunks = chunks.size();
+
+    if (indexRange == null || nChunks < 2 || log.getNCurves() == 0)
+      return chunks;
+
+    JsonCurve indexCurve = log.getCurves().get(0);
+
+    double[] firstIndices = new double[nChunks];
+    for (int i = 0; i < nChunks; i++) {
+      long[] chunk = chunks.get(i);
+      firstIndices[i] = readFirstIndex(scanner.createScanner(chunk[0], chunk[1]), indexCurve);
+    }
+
+    //
+    // Find the direction of the index
+    //
+    double firstIndex = Double.NaN;
+    double lastIndex = Double.NaN;
+    for (double index : firstIndices) {
+      if (!Double.isNaN(index)) {
+        if (Double.isNaN(firstIndex))
+          firstIndex = index;
+        lastIndex = index;
       }
+    }
 
-      else if (shouldReadBulkData || shouldCaptureStatistics) {
-        Object value = null;
-        if (parseEvent == JsonParser.Event.VALUE_NUMBER)
-          value = jsonParser.getBigDecimal().doubleValue();
-        else if (parseEvent == JsonParser.Event.VALUE_STRING)
-          value = jsonParser.getString();
-        else if (parseEvent == JsonParser.Event.VALUE_TRUE)
-          value = Boolean.TRUE;
-        else if (parseEvent == JsonParser.Event.VALUE_FALSE)
-          value = Boolean.FALSE;
-
-        JsonCurve curve = log.getCurves().get(curveNo);
-        Class<?> valueType = curve.getValueType();
-        int nDimensions = curve.getNDimensions();
-
-        if (shouldCaptureStatistics)
-          curve.getStatistics().push(Util.getAsDouble(value));
-
-        if (shouldReadBulkData)
-          curve.addValue(dimension, Util.getAsType(value, valueType));
-
-        // Move on to the next curve or dimension
-        if (nDimensions == 1) {
-          curveNo++;
-          dimension = 0;
+    if (Double.isNaN(firstIndex) || firstIndex == lastIndex)
+      return chunks;
+
+    int direction = lastIndex > firstIndex ? 1 : -1;
+
+    //
+    // Keep the chunks that are neither entirely before nor after the range.
+    // A chunk is entirely before if the first index of the next chunk is.
+    //
+    List<long[]> selectedChunks = new ArrayList<>();
+    for (int i = 0; i < nChunks; i++) {
+      double nextIndex = i < nChunks - 1 ? firstIndices[i + 1] : Double.NaN;
+
+      boolean isBefore = !Double.isNaN(nextIndex) && indexRange.isBefore(nextIndex, direction);
+      boolean isAfter = !Double.isNaN(firstIndices[i]) && indexRange.isAfter(firstIndices[i], direction);
+
+      if (!isBefore && !isAfter)
+        selectedChunks.add(chunks.get(i));
+    }
+
+    return selectedChunks;
+  }
+
+  /**
+   * Create an empty curve with the same definition, memory mode and
+   * precision as the specified curve, so that values read into it can
+   * be taken over as is.
+   *
+   * @param curve  Curve to create an empty copy of. Non-null.
+   * @return       The requested curve. Never null.
+   */
+  private JsonCurve newCurve(JsonCurve curve)
+  {
+    assert curve != null : "curve cannot be null";
+
+    JsonCurve newCurve = new JsonCurve(curve.getName(),
+                                       curve.getDescription(),
+                                       curve.getQuantity(),
+                                       curve.getUnit(),
+                                       curve.getValueType(),
+                                       curve.getNDimensions());
+    newCurve.setMemoryMode(curve.getMemoryMode(), mappedFile_);
+    newCurve.setSinglePrecision(curve.getSinglePrecision());
+    return newCurve;
+  }
+
+  /**
+   * Read curve data from the specified chunks of the data array of a log.
+   * <p>
+   * In parallel mode the chunks are read concurrently into separate
+   * curves, and then appended to the curves to populate in file order.
+   * Statistics are created as the chunks are appended, so that these are
+   * identical to a sequential read. Otherwise the chunks are read sequentially.
+   *
+   * @param scanner                  A JSON scanner of the file. Non-null.
+   * @param chunks                   Consecutive chunks of the data array as returned
+   *                                 by {@link #findDataChunks}. Non-null.
+   * @param log                      The log being read. Non-null.
+   * @param curves                   The curves to populate with data, one entry per
+   *                                 curve of the log and in the same order. Entries
+   *                                 are null for curves that should not be read.
+   *                                 Non-null.
+   * @param shouldReadBulkData       True if bulk data should be stored, false if not.
+   * @param shouldCaptureStatistics  True to create statistics from the bulk data,
+   *                                 false if not.
+   * @param indexRange               Range of index values of the rows to read.
+   *                                 Null to read all rows.
+   * @throws IOException  If the read operation fails for some reason.
+   * @throws InterruptedException  If the thread is interrupted while waiting
+   *                                 for the read operation to complete.
+   */
+  private void readDataChunks(JsonScanner scanner, List<long[]> chunks,
+                              JsonLog log, List<JsonCurve> curves,
+                              boolean shouldReadBulkData,
+                              boolean shouldCaptureStatistics,
+                              IndexRange indexRange)
+    throws IOException, InterruptedException
+  {
+    assert scanner != null : "scanner cannot be null";
+    assert scanner.isFile() : "Chunked read requires a file";
+    assert chunks != null : "chunks cannot be null";
+    assert log != null : "log cannot be null";
+    assert curves != null : "curves cannot be null";
+
+    if (chunks.isEmpty())
+      return;
+
+    // Small data sections are read directly
+    if (!isParallel_ || chunks.size() == 1) {
+      long startPosition = chunks.get(0)[0];
+      long endPosition = chunks.get(chunks.size() - 1)[1];
+      readData(scanner.createScanner(startPosition, endPosition), log, curves,
+               shouldReadBulkData,
+               shouldCaptureStatistics,
+               null,
+               indexRange,
+               null,
+               null);
+      return;
+    }
+
+    int nCurves = curves.size();
+
+    List<ForkJoinTask<List<JsonCurve>>> tasks = new ArrayList<>();
+    List<DoubleList[]> statisticsValues = new ArrayList<>();
+
+    try {
+      for (long[] chunk : chunks) {
+        JsonCurve[] chunkCurves = new JsonCurve[nCurves];
+        DoubleList[] chunkStatisticsValues = new DoubleList[nCurves];
+
+        for (int curveNo = 0; curveNo < nCurves; curveNo++) {
+          JsonCurve curve = curves.get(curveNo);
+          if (curve != null) {
+            chunkCurves[curveNo] = newCurve(curve);
+            if (shouldCaptureStatistics)
+              chunkStatisticsValues[curveNo] = new DoubleList();
+          }
         }
-        else {
-          dimension++;
+
+        statisticsValues.add(chunkStatisticsValues);
+
+        tasks.add(ForkJoinPool.commonPool().submit(() -> {
+          List<JsonCurve> chunkCurveList = Arrays.asList(chunkCurves);
+          readData(scanner.createScanner(chunk[0], chunk[1]), log, chunkCurveList,
+                   shouldReadBulkData,
+                   shouldCaptureStatistics,
+                   chunkStatisticsValues,
+                   indexRange,
+                   null,
+                   null);
+          return chunkCurveList;
+        }));
+      }
+
+      // Append the chunks to the curves in file order
+      for (int chunkNo = 0; chunkNo < tasks.size(); chunkNo++) {
+        List<JsonCurve> chunkCurves = JsonUtil.getResult(tasks.get(chunkNo));
+        DoubleList[] chunkStatisticsValues = statisticsValues.get(chunkNo);
+
+        for (int curveNo = 0; curveNo < nCurves; curveNo++) {
+          JsonCurve curve = curves.get(curveNo);
+          if (curve == null)
+            continue;
+
+          if (shouldReadBulkData)
+            curve.addValues(chunkCurves.get(curveNo));
+
+          if (shouldCaptureStatistics) {
+            DoubleList values = chunkStatisticsValues[curveNo];
+            for (int i = 0; i < values.size(); i++)
+              curve.getStatistics().push(values.getDouble(i));
+          }
         }
       }
     }
+    finally {
+      // In case of failure, skip the tasks not yet started
+      for (ForkJoinTask<List<JsonCurve>> task : tasks)
+        task.cancel(false);
+    }
+  }
 
-    assert false : "Invalid state";
+  /**
+   * Read the values of the specified curve from the data array
+   * of its log in the file of this reader.
+   * <p>
+   * This is used to load curve values on demand in lazy mode.
+   * The values are read into a new curve that is returned.
+   *
+   * @param log                      The log of the curve. Non-null.
+   * @param chunks                   Chunks of the data array of the log as
+   *                                 returned by {@link #findDataChunks}. Non-null.
+   * @param curve                    Curve to read values of. Non-null.
+   * @param shouldCaptureStatistics  True to create statistics from the values,
+   *                                 false if not.
+   * @param indexRange               Range of index values of the rows to read.
+   *                                 Null to read all rows.
+   * @return  A new curve with the same definition as the specified one,
+   *          populated with its values. Never null.
+   * @throws IOException  If the read operation fails for some reason.
+   */
+  JsonCurve readCurve(JsonLog log, List<long[]> chunks, JsonCurve curve,
+                      boolean shouldCaptureStatistics,
+                      IndexRange indexRange)
+    throws IOException
+  {
+    assert log != null : "log cannot be null";
+    assert chunks != null : "chunks cannot be null";
+    assert curve != null : "curve cannot be null";
+    assert file_ != null : "Lazy mode requires a file";
+
+    List<JsonCurve> logCurves = log.getCurves();
+    int curveNo = logCurves.indexOf(curve);
+    assert curveNo != -1 : "curve is not part of log";
+
+    JsonCurve loadedCurve = newCurve(curve);
+
+    // Read the specified curve only
+    JsonCurve[] curves = new JsonCurve[logCurves.size()];
+    curves[curveNo] = loadedCurve;
+
+    FileChannel fileChannel = FileChannel.open(file_.toPath(), StandardOpenOption.READ);
+
+    try {
+      JsonScanner scanner = new JsonScanner(fileChannel, isMemoryMapped_, 0L, Long.MAX_VALUE);
+      readDataChunks(scanner, chunks, log, Arrays.asList(curves), true,
+                     shouldCaptureStatistics,
+                     indexRange);
+    }
+    catch (InterruptedException exception) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Reading interrupted: " + file_.getPath());
+    }
+    finally {
+      fileChannel.close();
+      mappedFile_.close();
+    }
+
+    loadedCurve.trim();
+    loadedCurve.compress();
+    return loadedCurve;
   }
 
   /**
@@ -371,68 +1253,454 @@ public final class JsonReader
   }
 
   /**
-   * Read log object from the current position in the JSON parser
+   * Create a JSON parser for the specified JSON content.
+   *
+   * @param content  JSON content as captured by the scanner. Non-null.
+   * @return         The requested parser. Never null.
+   */
+  private static JsonParser createParser(byte[] content)
+  {
+    assert content != null : "content cannot be null";
+    return Json.createParser(new ByteArrayInputStream(content));
+  }
+
+  /**
+   * Return the curves of the specified log that are selected by
+   * the given filter. The index curve is always selected.
+   *
+   * @param log          Log to select curves from. Non-null.
+   * @param curveFilter  Filter for the curves to select. Null to select all.
+   * @return             The curves of the log, with null entries for the
+   *                     curves that are not selected. Never null.
+   */
+  private static List<JsonCurve> selectCurves(JsonLog log, Predicate<JsonCurve> curveFilter)
+  {
+    assert log != null : "log cannot be null";
+
+    List<JsonCurve> curves = log.getCurves();
+
+    if (curveFilter == null)
+      return curves;
+
+    List<JsonCurve> selectedCurves = new ArrayList<>(curves.size());
+    for (int curveNo = 0; curveNo < curves.size(); curveNo++) {
+      JsonCurve curve = curves.get(curveNo);
+      boolean isSelected = curveNo == 0 || curveFilter.test(curve);
+      selectedCurves.add(isSelected ? curve : null);
+    }
+
+    return selectedCurves;
+  }
+
+  /**
+   * Read the members of a log object from the current position in the
+   * JSON scanner up to its data array or to its end.
+   * <p>
+   * The header and curve definitions are captured by the scanner and
+   * parsed by javax.json, while the data is read directly by the scanner.
+   * The hand-over must be done at this level as javax.json reads ahead
+   * in its input.
+   *
+   * @param scanner  The scanner positioned after the opening brace of the
+   *                 log object or after a member of it. Non-null.
+   * @param log      The log to populate with header and curve definitions. Non-null.
+   * @return         True if the scanner is positioned after the opening
+   *                 bracket of the data array, false if it is positioned
+   *                 after the closing brace of the log object.
+   * @throws IOException  If the read operation fails for some reason.
+   */
+  boolean readLogHead(JsonScanner scanner, JsonLog log)
+    throws IOException
+  {
+    assert scanner != null : "scanner cannot be null";
+    assert log != null : "log cannot be null";
+
+    while (true) {
+      int b = scanner.nextNonSpace();
+
+      if (b == -1)
+        throw new IOException("Invalid JSON content: " + getName());
+
+      if (b == '}')
+        return false;
+
+      if (b == ',')
+        continue;
+
+      if (b != '"')
+        throw scanner.newException("Expected key");
+
+      String key = scanner.readString();
+
+      if (scanner.nextNonSpace() != ':')
+        throw scanner.newException("Expected ':'");
+
+      b = scanner.nextNonSpace();
+
+      //
+      // "header"
+      //
+      if (key.equals("header") && b == '{') {
+        JsonParser jsonParser = createParser(scanner.readValue(b));
+        JsonObjectBuilder objectBuilder = JsonUtil.readJsonObject(jsonParser);
+        JsonObject header = objectBuilder.build();
+        log.setHeader(header);
+        jsonParser.close();
+      }
+
+      //
+      // "curves"
+      //
+      else if (key.equals("curves") && b == '[') {
+        JsonParser jsonParser = createParser(scanner.readValue(b));
+        readCurveDefinitions(jsonParser, log);
+        jsonParser.close();
+      }
+
+      //
+      // "data"
+      //
+      else if (key.equals("data") && b == '[') {
+        return true;
+      }
+
+      else {
+        scanner.skipValue(b);
+      }
+    }
+  }
+
+  /**
+   * Read the next rows of the data array of the specified log into the
+   * block of the specified collector, replacing its current content.
+   *
+   * @param scanner             The scanner positioned after the opening
+   *                            bracket of the data array, or at the start
+   *                            of a row. Non-null.
+   * @param log                 The log being read. Non-null.
+   * @param dataBlockCollector  Collector without a listener holding the
+   *                            block to populate. Non-null.
+   * @return  True if the data array may contain more rows, false if the
+   *          scanner is positioned after the data array.
+   * @throws IOException  If the read operation fails for some reason.
+   */
+  boolean readDataBlock(JsonScanner scanner, JsonLog log,
+                        DataBlockCollector dataBlockCollector)
+    throws IOException
+  {
+    assert scanner != null : "scanner cannot be null";
+    assert log != null : "log cannot be null";
+    assert dataBlockCollector != null : "dataBlockCollector cannot be null";
+
+    JsonDataBlock dataBlock = dataBlockCollector.getDataBlock();
+    dataBlock.clear();
+
+    try {
+      boolean isComplete = readData(scanner, log, log.getCurves(),
+                                    false,
+                                    false,
+                                    null,
+                                    indexRange_,
+                                    null,
+                                    dataBlockCollector);
+      if (isComplete)
+        return false;
+
+      // Reading stopped after the rows within the index range
+      if (!dataBlock.isFull()) {
+        scanner.skipValue('[');
+        return false;
+      }
+
+      return true;
+    }
+    catch (InterruptedException exception) {
+      // Only thrown by listeners, so not expected here
+      throw new InterruptedIOException("Reading interrupted: " + getName());
+    }
+  }
+
+  /**
+   * Read log object from the current position in the JSON scanner
    * and return as a JsonLog instance.
+   * <p>
+   * The header and curve definitions are captured by the scanner and
+   * parsed by javax.json, while the data is read directly by the scanner.
+   * The hand-over must be done at this level as javax.json reads ahead
+   * in its input.
    *
-   * @param jsonParser           The parser. Non-null.
+   * @param scanner              The scanner positioned after the opening
+   *                             brace of the log object. Non-null.
    * @param shouldReadBulkData   True if bulk data should be read, false
    *                             if only metadata should be read.
    * @param shouldCaptureStatistics  True if curve statistics should be
    *                             captures, false otherwise,
    * @param dataListener         Client data listener. Null if not used.
+   * @param curveFilter          Filter for the curves to read. Null to read all.
+   * @param dataBlockCollector   Collector of the data rows in blocks for a
+   *                             client block listener. Null if not used.
    * @return  The read instance. Never null.
    * @throws IOException  If the read operation fails for some reason.
    * @throws InterruptedException  If the client returns <tt>false</tt> from
-   *                             the {@link JsonDataListener#dataRead} method.
+   *                             the {@link JsonDataListener#dataRead} or
+   *                             {@link JsonDataBlockListener#dataRead} method.
    */
-  private JsonLog readLog(JsonParser jsonParser,
+  private JsonLog readLog(JsonScanner scanner,
                           boolean shouldReadBulkData,
                           boolean shouldCaptureStatistics,
-                          JsonDataListener dataListener)
+                          JsonDataListener dataListener,
+                          Predicate<JsonCurve> curveFilter,
+                          DataBlockCollector dataBlockCollector)
     throws IOException, InterruptedException
   {
     JsonLog log = new JsonLog();
 
-    while (jsonParser.hasNext()) {
-      JsonParser.Event parseEvent = jsonParser.next();
-
-      if (parseEvent == JsonParser.Event.END_OBJECT) {
-        log.trimCurves();
-        return log;
+    while (readLogHead(scanner, log)) {
+      for (JsonCurve curve : log.getCurves())
+        curve.setMemoryMode(memoryMode_, mappedFile_);
+
+      // The index curve is always kept in double precision
+      if (singlePrecisionTolerance_ != null) {
+        List<JsonCurve> logCurves = log.getCurves();
+        for (int curveNo = 1; curveNo < logCurves.size(); curveNo++) {
+          JsonCurve curve = logCurves.get(curveNo);
+          if (singlePrecisionFilter_ == null || singlePrecisionFilter_.test(curve))
+            curve.setSinglePrecision(singlePrecisionTolerance_);
+        }
       }
 
-      if (parseEvent == JsonParser.Event.KEY_NAME) {
-        String key = jsonParser.getString();
+      boolean isReadingValues = shouldReadBulkData || shouldCaptureStatistics;
+      boolean isChunked = isReadingValues && dataListener == null && dataBlockCollector == null && scanner.isFile();
 
-        //
-        // "header"
-        //
-        if (key.equals("header")) {
-          JsonObjectBuilder objectBuilder = JsonUtil.readJsonObject(jsonParser);
-          JsonObject header = objectBuilder.build();
-          log.setHeader(header);
-        }
+      List<JsonCurve> curves = selectCurves(log, curveFilter);
 
-        //
-        // "curves"
-        //
-        if (key.equals("curves")) {
-          readCurveDefinitions(jsonParser, log);
+      boolean isLazy = isLazy_ && isChunked && shouldReadBulkData;
+
+      // Make room for the values up front to avoid growing the curves
+      if (shouldReadBulkData && !isLazy && log.getNValues() == 0) {
+        int nValues = predictNValues(scanner, log, curves);
+        for (JsonCurve curve : curves) {
+          if (curve != null && nValues > 0)
+            curve.ensureCapacity(nValues);
         }
+      }
 
-        //
-        // "data"
-        //
-        if (key.equals("data")) {
-          readData(jsonParser, log,
-                   shouldReadBulkData,
-                   shouldCaptureStatistics,
-                   dataListener);
+      // In lazy mode only the location of the data is recorded
+      if (isLazy) {
+        // The loader needs all the curves of the data array,
+        // also those that are removed by the curve filter
+        JsonLog dataLog = new JsonLog(false);
+        for (JsonCurve curve : log.getCurves())
+          dataLog.addCurve(curve);
+
+        List<long[]> chunks = selectDataChunks(scanner, findDataChunks(scanner), log, indexRange_);
+
+        JsonDataLoader dataLoader = new JsonDataLoader(this, dataLog, chunks,
+                                                       shouldCaptureStatistics,
+                                                       indexRange_);
+        for (JsonCurve curve : curves) {
+          if (curve != null)
+            curve.setDataLoader(dataLoader);
         }
       }
+
+      else if (isParallel_ && isChunked) {
+        List<long[]> chunks = selectDataChunks(scanner, findDataChunks(scanner), log, indexRange_);
+        readDataChunks(scanner, chunks, log, curves,
+                       shouldReadBulkData,
+                       shouldCaptureStatistics,
+                       indexRange_);
+      }
+
+      else {
+        if (dataBlockCollector != null)
+          dataBlockCollector.startLog(log);
+
+        boolean isComplete = readData(scanner, log, curves,
+                                      shouldReadBulkData,
+                                      shouldCaptureStatistics,
+                                      null,
+                                      indexRange_,
+                                      dataListener,
+                                      dataBlockCollector);
+
+        // Pass on the last rows of the log
+        if (dataBlockCollector != null && !dataBlockCollector.flush())
+          throw new InterruptedException("Reading aborted by client: " + getName());
+
+        // Skip the remaining rows of the data array
+        if (!isComplete)
+          scanner.skipValue('[');
+      }
+    }
+
+    // Remove the curves that are not selected
+    if (curveFilter != null) {
+      List<JsonCurve> curves = new ArrayList<>();
+      for (JsonCurve curve : selectCurves(log, curveFilter)) {
+        if (curve != null)
+          curves.add(curve);
+      }
+      log.setCurves(curves);
+    }
+
+    log.trimCurves();
+    return log;
+  }
+
+  /**
+   * Predict the number of values of the specified log from the start index,
+   * end index and step of its header, within the index range of this reader.
+   * The prediction is only a hint for sizing the curves, and the actual
+   * number of values may be different.
+   * <p>
+   * As the header may be wrong, the prediction is checked against what the
+   * remaining content can hold, assuming at least MIN_BYTES_PER_VALUE bytes
+   * per value of each row. If the header predicts more rows than that, it
+   * is not trusted and the curves grow as the values are read. The total
+   * number of values across the curves is also capped at MAX_PREDICTED_NVALUES,
+   * which is the only bound when reading from a stream.
+   *
+   * @param scanner  Scanner positioned at the data of the log. Non-null.
+   * @param log      Log to predict number of values of. Non-null.
+   * @param curves   Curves being read, null for the ones that are skipped. Non-null.
+   * @return         Predicted number of values of the log. 0 if it cannot be predicted.
+   */
+  private int predictNValues(JsonScanner scanner, JsonLog log, List<JsonCurve> curves)
+  {
+    assert scanner != null : "scanner cannot be null";
+    assert log != null : "log cannot be null";
+    assert curves != null : "curves cannot be null";
+
+    // Time based logs are not predicted as the step unit is not known
+    Object startIndex = log.getStartIndex();
+    Object endIndex = log.getEndIndex();
+    Double step = log.getStep();
+    if (!(startIndex instanceof Double) || !(endIndex instanceof Double) || step == null || step == 0.0)
+      return 0;
+
+    double minIndex = Math.min((Double) startIndex, (Double) endIndex);
+    double maxIndex = Math.max((Double) startIndex, (Double) endIndex);
+
+    if (indexRange_ != null) {
+      minIndex = Math.max(minIndex, indexRange_.minIndex_);
+      maxIndex = Math.min(maxIndex, indexRange_.maxIndex_);
+    }
+
+    double nValues = Math.floor((maxIndex - minIndex) / Math.abs(step) + 0.5) + 1.0;
+
+    if (Double.isNaN(nValues) || nValues < 1.0)
+      return 0;
+
+    // A header predicting more rows than the content can hold is wrong
+    long nRemainingBytes = scanner.getNRemainingBytes();
+    if (nRemainingBytes >= 0L) {
+      long nRowDimensions = 0L;
+      for (JsonCurve curve : log.getCurves())
+        nRowDimensions += curve.getNDimensions();
+
+      long nMaxValues = nRemainingBytes / (MIN_BYTES_PER_VALUE * Math.max(nRowDimensions, 1L));
+      if (nValues > nMaxValues)
+        return 0;
+    }
+
+    long nReadDimensions = 0L;
+    for (JsonCurve curve : curves) {
+      if (curve != null)
+        nReadDimensions += curve.getNDimensions();
+    }
+
+    return (int) Math.min(nValues, MAX_PREDICTED_NVALUES / Math.max(nReadDimensions, 1L));
+  }
+
+  /**
+   * Find the file regions of the logs of the content of the specified scanner.
+   *
+   * @param scanner  Scanner positioned at the start of the content. Non-null.
+   * @return         Start and end file positions of each log object. Never null.
+   * @throws IOException  If the read operation fails for some reason.
+   */
+  private static List<long[]> findLogs(JsonScanner scanner)
+    throws IOException
+  {
+    assert scanner != null : "scanner cannot be null";
+
+    List<long[]> regions = new ArrayList<>();
+
+    while (true) {
+      int b = scanner.nextNonSpace();
+
+      if (b == ']' || b == -1)
+        return regions;
+
+      if (b == '{') {
+        long startPosition = scanner.getPosition() - 1;
+        scanner.skipValue(b);
+        regions.add(new long[] {startPosition, scanner.getPosition()});
+      }
+
+      else if (b != '[' && b != ',') {
+        scanner.skipValue(b);
+      }
+    }
+  }
+
+  /**
+   * Read all logs of the file of this reader in parallel.
+   *
+   * @param shouldReadBulkData  True if bulk data should be read, false
+   *                            if only metadata should be read.
+   * @param shouldCaptureStatistics  True if curve statistics should be
+   *                            captures, false otherwise,
+   * @param curveFilter         Filter for the curves to read. Null to read all.
+   * @return                    The logs of the file. Never null.
+   * @throws IOException        If the read operation fails for some reason.
+   * @throws InterruptedException  If the thread is interrupted while waiting
+   *                            for the read operation to complete.
+   */
+  private List<JsonLog> readParallel(boolean shouldReadBulkData,
+                                     boolean shouldCaptureStatistics,
+                                     Predicate<JsonCurve> curveFilter)
+    throws IOException, InterruptedException
+  {
+    assert file_ != null : "Parallel read requires a file";
+
+    FileChannel fileChannel = null;
+
+    List<ForkJoinTask<JsonLog>> tasks = new ArrayList<>();
+
+    try {
+      fileChannel = FileChannel.open(file_.toPath(), StandardOpenOption.READ);
+
+      List<long[]> regions = findLogs(new JsonScanner(fileChannel, isMemoryMapped_, 0L, Long.MAX_VALUE));
+
+      for (long[] region : regions) {
+        FileChannel channel = fileChannel;
+        tasks.add(ForkJoinPool.commonPool().submit(() -> {
+          // Start right after the opening brace of the log object
+          JsonScanner scanner = new JsonScanner(channel, isMemoryMapped_, region[0] + 1, region[1]);
+          return readLog(scanner, shouldReadBulkData, shouldCaptureStatistics, null, curveFilter, null);
+        }));
+      }
+
+      // Collect the logs in file order
+      List<JsonLog> logs = new ArrayList<>();
+      for (ForkJoinTask<JsonLog> task : tasks)
+        logs.add(JsonUtil.getResult(task));
+
+      return logs;
     }
+    finally {
+      // In case of failure, skip the tasks not yet started
+      for (ForkJoinTask<JsonLog> task : tasks)
+        task.cancel(false);
+
+      if (fileChannel != null)
+        fileChannel.close();
 
-    throw new IOException("Invalid JSON content: " + (file_ != null ? file_.toString() : inputStream_.toString()));
+      // The curves keep their mapped regions, further reads map a new file
+      mappedFile_.close();
+    }
   }
 
   /**
@@ -450,7 +1718,8 @@ public final class JsonReader
    *
    * There is nothing to gain in performance with this approach
    * so in case the result is not cached, the following will
-   * be equivalent:
+   * be equivalent (see {@link #setLazy} for reading curve values
+   * on demand instead):
    *
    * <pre>
    *   // Read metadata
@@ -499,13 +1768,30 @@ public final class JsonReader
   }
 
   /**
-   * Read all logs from the content of this reader.
+   * Read all logs from the content of this reader, including only
+   * the curves selected by the specified filter.
+   * <p>
+   * The values of the curves that are not selected are skipped
+   * without being converted or stored, and the curves are removed
+   * from the logs after the read. The index curve is always included.
+   * Note that during the read operation, the logs passed to the data
+   * listener contain all curves, but without values for the curves
+   * that are not selected.
+   * <p>
+   * Typical usage:
+   *
+   * <pre>
+   *   Set&lt;String&gt; curveNames = ...;
+   *   List&lt;JsonLog&gt; logs = reader.read(true, true, null,
+   *                                    curve -&gt; curveNames.contains(curve.getName()));
+   * </pre>
    *
    * @param shouldReadBulkData  True if bulk data should be read, false
    *                            if only metadata should be read.
    * @param shouldCaptureStatistics  True if curve statistics should be
    *                            captures, false otherwise,
    * @param dataListener        Client data listener. Null if not used.
+   * @param curveFilter         Filter for the curves to read. Null to read all.
    * @return                    The logs of the JSON stream. Never null.
    * @throws IOException        If the read operation fails for some reason.
    * @throws InterruptedException  If the client returns <tt>false</tt> from
@@ -513,35 +1799,74 @@ public final class JsonReader
    */
   public List<JsonLog> read(boolean shouldReadBulkData,
                             boolean shouldCaptureStatistics,
-                            JsonDataListener dataListener)
+                            JsonDataListener dataListener,
+                            Predicate<JsonCurve> curveFilter)
+    throws IOException, InterruptedException
+  {
+    if (isParallel_ && file_ != null && dataListener == null)
+      return readParallel(shouldReadBulkData, shouldCaptureStatistics, curveFilter);
+
+    return read(shouldReadBulkData, shouldCaptureStatistics, dataListener, curveFilter, null);
+  }
+
+  /**
+   * Read all logs from the content of this reader sequentially.
+   *
+   * @param shouldReadBulkData  True if bulk data should be read, false
+   *                            if only metadata should be read.
+   * @param shouldCaptureStatistics  True if curve statistics should be
+   *                            captures, false otherwise,
+   * @param dataListener        Client data listener. Null if not used.
+   * @param curveFilter         Filter for the curves to read. Null to read all.
+   * @param dataBlockCollector  Collector of the data rows in blocks for a
+   *                            client block listener. Null if not used.
+   * @return                    The logs of the JSON stream. Never null.
+   * @throws IOException        If the read operation fails for some reason.
+   * @throws InterruptedException  If the client aborts the read operation.
+   */
+  private List<JsonLog> read(boolean shouldReadBulkData,
+                             boolean shouldCaptureStatistics,
+                             JsonDataListener dataListener,
+                             Predicate<JsonCurve> curveFilter,
+                             DataBlockCollector dataBlockCollector)
     throws IOException, InterruptedException
   {
     List<JsonLog> logs = new ArrayList<>();
 
     InputStream inputStream = null;
+    FileChannel fileChannel = null;
 
     try {
-      inputStream = inputStream_ != null ? inputStream_ : new FileInputStream(file_);
-      JsonParser jsonParser = Json.createParser(inputStream);
+      JsonScanner scanner;
+      if (isMemoryMapped_) {
+        fileChannel = FileChannel.open(file_.toPath(), StandardOpenOption.READ);
+        scanner = new JsonScanner(fileChannel, true, 0L, Long.MAX_VALUE);
+      }
+      else {
+        inputStream = inputStream_ != null ? inputStream_ : new FileInputStream(file_);
+        scanner = new JsonScanner(inputStream);
+      }
 
-      while (jsonParser.hasNext()) {
-        JsonParser.Event parseEvent = jsonParser.next();
+      while (true) {
+        int b = scanner.nextNonSpace();
 
-        if (parseEvent == JsonParser.Event.END_ARRAY)
+        if (b == ']' || b == -1)
           return logs;
 
-        if (parseEvent == JsonParser.Event.START_OBJECT) {
-          JsonLog log = readLog(jsonParser,
+        if (b == '{') {
+          JsonLog log = readLog(scanner,
                                 shouldReadBulkData,
                                 shouldCaptureStatistics,
-                                dataListener);
+                                dataListener,
+                                curveFilter,
+                                dataBlockCollector);
           logs.add(log);
         }
-      }
-
-      jsonParser.close();
 
-      return logs;
+        else if (b != '[' && b != ',') {
+          scanner.skipValue(b);
+        }
+      }
     }
     catch (IOException exception) {
       throw exception;
@@ -552,8 +1877,108 @@ public final class JsonReader
     finally {
       // We only close in the file input case.
       // Otherwise the client manage the stream.
-      if (file_ != null)
+      if (file_ != null && inputStream != null)
         inputStream.close();
+
+      if (fileChannel != null)
+        fileChannel.close();
+
+      // The curves keep their mapped regions, further reads map a new file
+      mappedFile_.close();
     }
   }
+
+  /**
+   * Read all logs from the content of this reader.
+   *
+   * @param shouldReadBulkData  True if bulk data should be read, false
+   *                            if only metadata should be read.
+   * @param shouldCaptureStatistics  True if curve statistics should be
+   *                            captures, false otherwise,
+   * @param dataListener        Client data listener. Null if not used.
+   * @return                    The logs of the JSON stream. Never null.
+   * @throws IOException        If the read operation fails for some reason.
+   * @throws InterruptedException  If the client returns <tt>false</tt> from
+   *                            the {@link JsonDataListener#dataRead} method.
+   */
+  public List<JsonLog> read(boolean shouldReadBulkData,
+                            boolean shouldCaptureStatistics,
+                            JsonDataListener dataListener)
+    throws IOException, InterruptedException
+  {
+    return read(shouldReadBulkData, shouldCaptureStatistics, dataListener, null);
+  }
+
+  /**
+   * Read all logs from the content of this reader, passing the curve
+   * values to the specified listener in blocks of rows rather than
+   * storing them with the curves.
+   * <p>
+   * The values of each block are kept as primitive arrays per curve
+   * dimension, see {@link JsonDataBlock}. If the listener recycles the
+   * block, the same arrays are reused for the next rows, so reading
+   * an arbitrary large file is done with constant memory and without
+   * creating objects per value.
+   * <p>
+   * The logs passed to the listener and returned contain the metadata
+   * and (if requested) statistics of the curves, but no curve values.
+   * The content is always read sequentially, and lazy mode does not apply.
+   *
+   * @param shouldCaptureStatistics  True if curve statistics should be
+   *                            captures, false otherwise,
+   * @param dataBlockListener   Client data block listener. Non-null.
+   * @param blockSize           Maximum number of rows per block. [1,&gt;.
+   * @return                    The logs of the JSON stream. Never null.
+   * @throws IllegalArgumentException  If dataBlockListener is null or
+   *                            blockSize is less than 1.
+   * @throws IOException        If the read operation fails for some reason.
+   * @throws InterruptedException  If the client returns <tt>false</tt> from
+   *                            the {@link JsonDataBlockListener#dataRead} method.
+   */
+  public List<JsonLog> read(boolean shouldCaptureStatistics,
+                            JsonDataBlockListener dataBlockListener,
+                            int blockSize)
+    throws IOException, InterruptedException
+  {
+    if (dataBlockListener == null)
+      throw new IllegalArgumentException("dataBlockListener cannot be null");
+
+    if (blockSize < 1)
+      throw new IllegalArgumentException("Invalid blockSize: " + blockSize);
+
+    DataBlockCollector dataBlockCollector = new DataBlockCollector(dataBlockListener, blockSize);
+    return read(false, shouldCaptureStatistics, null, null, dataBlockCollector);
+  }
+
+  /**
+   * Open a cursor for pulling the logs and data rows of the content
+   * of this reader one by one, keeping at most the specified number
+   * of rows in memory. See {@link JsonLogCursor}.
+   * <p>
+   * The index range of this reader applies, while the parallel and
+   * lazy modes do not. The client must close the cursor after use.
+   *
+   * @param bufferSize  Maximum number of rows to keep in memory. [1,&gt;.
+   * @return            A cursor positioned before the first log. Never null.
+   * @throws IllegalArgumentException  If bufferSize is less than 1.
+   * @throws IOException  If opening the content fails for some reason.
+   */
+  public JsonLogCursor openCursor(int bufferSize)
+    throws IOException
+  {
+    if (bufferSize < 1)
+      throw new IllegalArgumentException("Invalid bufferSize: " + bufferSize);
+
+    if (isMemoryMapped_) {
+      FileChannel fileChannel = FileChannel.open(file_.toPath(), StandardOpenOption.READ);
+      JsonScanner scanner = new JsonScanner(fileChannel, true, 0L, Long.MAX_VALUE);
+      return new JsonLogCursor(this, scanner, fileChannel, bufferSize);
+    }
+
+    // We only close in the file input case.
+    // Otherwise the client manage the stream.
+    InputStream inputStream = inputStream_ != null ? inputStream_ : new FileInputStream(file_);
+    JsonScanner scanner = new JsonScanner(inputStream);
+    return new JsonLogCursor(this, scanner, file_ != null ? inputStream : null, bufferSize);
+  }
 }
@@ -0,0 +1,793 @@
+package no.petroware.logio.json;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Byte level scanner of UTF-8 encoded JSON content.
+ * <p>
+ * The data section of a JSON Well Log Format file is a very regular
+ * array of arrays of numbers, strings and nulls. This class provides the
+ * minimal set of operations needed to read such content directly from the
+ * bytes, which is a lot faster than pushing it through the general purpose
+ * event machinery of javax.json. In particular numbers are parsed without
+ * creating any intermediate objects.
+ * <p>
+ * The (small) remaining parts of a JSON Well Log Format file, like the
+ * header and the curve definitions, can be captured as bytes by
+ * {@link #readValue} and handed to javax.json for parsing.
+ * <p>
+ * The content is read either from a stream, or from a region of a file.
+ * File content may be memory mapped, in which case the file is mapped in
+ * regions of at most {@link #MAP_SIZE} bytes so that there is no limit
+ * on the file size. Several scanners may read different regions of the
+ * same file concurrently.
+ * <p>
+ * The scanner does not do a full validation of the content,
+ * see {@link JsonValidator} for that purpose.
+ *
+ * @author <a href="mailto:info@petroware.no">Petroware AS</a>
+ */
+final class JsonScanner
+{
+  /** Size of the read buffer. */
+  private static final int BUFFER_SIZE = 65536;
+
+  /** Size of each memory mapped region of a file. */
+  private static final long MAP_SIZE = 1L << 30;
+
+  /**
+   * Maximum number of significant digits of a number that can be
+   * converted exactly by the fast path of {@link #parseDouble}.
+   * 10^15 &lt; 2^53 so such mantissas are exact as doubles.
+   */
+  private static final int MAX_FAST_DIGITS = 15;
+
+  /** Powers of ten that are exactly representable as doubles. */
+  private static final double[] POWERS_OF_TEN = {
+    1.0e0,  1.0e1,  1.0e2,  1.0e3,  1.0e4,  1.0e5,  1.0e6,  1.0e7,
+    1.0e8,  1.0e9,  1.0e10, 1.0e11, 1.0e12, 1.0e13, 1.0e14, 1.0e15,
+    1.0e16, 1.0e17, 1.0e18, 1.0e19, 1.0e20, 1.0e21, 1.0e22
+  };
+
+  /** Number of entries of the pool of recently read strings. Power of 2. */
+  private static final int STRING_POOL_SIZE = 1024;
+
+  /** Maximum length of strings kept in the pool. */
+  private static final int MAX_POOLED_STRING_LENGTH = 64;
+
+  /** The stream to read from. Null if reading from file. */
+  private final InputStream inputStream_;
+
+  /** The file to read from. Null if reading from a stream. */
+  private final FileChannel fileChannel_;
+
+  /** True if the file is memory mapped, false if it is read by positional reads. */
+  private final boolean isMemoryMapped_;
+
+  /** File position where the scanned region ends. Long.MAX_VALUE for streams. */
+  private final long endPosition_;
+
+  /** File position of the next byte to transfer to the buffer. [0,&gt;. */
+  private long filePosition_;
+
+  /** The current memory mapped region. Null if none. */
+  private MappedByteBuffer mappedBuffer_;
+
+  /** The read buffer. */
+  private final byte[] buffer_ = new byte[BUFFER_SIZE];
+
+  /** Position of next byte to read from the buffer. [0,limit]. */
+  private int position_ = 0;
+
+  /** Number of valid bytes in the buffer. [0,BUFFER_SIZE]. */
+  private int limit_ = 0;
+
+  /** Stream position of the first byte in the buffer. [0,&gt;. */
+  private long bufferOffset_ = 0L;
+
+  /** Bytes of the current token or captured value. */
+  private byte[] token_ = new byte[64];
+
+  /** Number of bytes in token_. [0,&gt;. */
+  private int tokenLength_ = 0;
+
+  /** Characters of the current string. */
+  private char[] chars_ = new char[64];
+
+  /** Recently read strings by hash, so that repeated strings share one instance. */
+  private final String[] stringPool_ = new String[STRING_POOL_SIZE];
+
+  /**
+   * Create a JSON scanner for the specified stream.
+   * <p>
+   * The stream is read in large blocks, so there is no need
+   * for the client to buffer it.
+   *
+   * @param inputStream  Stream to read. Non-null.
+   */
+  JsonScanner(InputStream inputStream)
+  {
+    assert inputStream != null : "inputStream cannot be null";
+
+    inputStream_ = inputStream;
+    fileChannel_ = null;
+    isMemoryMapped_ = false;
+    endPosition_ = Long.MAX_VALUE;
+  }
+
+  /**
+   * Create a JSON scanner for the specified region of a file.
+   * <p>
+   * Positions reported by the scanner are file positions.
+   * Note that the client is responsible for closing the
+   * file channel when done.
+   *
+   * @param fileChannel     File to read. Non-null.
+   * @param isMemoryMapped  True to memory map the file and read the content
+   *                        directly from the mapped regions, false to read
+   *                        the file by positional reads.
+   * @param startPosition   File position of the first byte to scan. [0,&gt;.
+   * @param endPosition     File position where scanning should end. Content
+   *                        beyond the end of file is never read.
+   * @throws IOException  If accessing the file fails for some reason.
+   */
+  JsonScanner(FileChannel fileChannel, boolean isMemoryMapped, long startPosition, long endPosition)
+    throws IOException
+  {
+    assert fileChannel != null : "fileChannel cannot be null";
+    assert startPosition >= 0L : "Invalid startPosition: " + startPosition;
+
+    inputStream_ = null;
+    fileChannel_ = fileChannel;
+    isMemoryMapped_ = isMemoryMapped;
+    endPosition_ = Math.min(endPosition, fileChannel.size());
+    filePosition_ = startPosition;
+    bufferOffset_ = startPosition;
+  }
+
+  /**
+   * Check if this scanner reads from a file.
+   *
+   * @return  True if this scanner reads from a file, false if it
+   *          reads from a stream.
+   */
+  boolean isFile()
+  {
+    return fileChannel_ != null;
+  }
+
+  /**
+   * Create a scanner for another region of the file of this scanner.
+   * The new scanner is independent of this one, and the two may be
+   * used concurrently.
+   *
+   * @param startPosition  File position of the first byte to scan. [0,&gt;.
+   * @param endPosition    File position where scanning should end.
+   * @return               The requested scanner. Never null.
+   * @throws IOException  If accessing the file fails for some reason.
+   */
+  JsonScanner createScanner(long startPosition, long endPosition)
+    throws IOException
+  {
+    assert isFile() : "Scanner doesn't read from a file";
+    return new JsonScanner(fileChannel_, isMemoryMapped_, startPosition, endPosition);
+  }
+
+  /**
+   * Read the next block of bytes from the file into the buffer.
+   *
+   * @return  Number of bytes read, or -1 if end of the region is reached.
+   * @throws IOException  If the read operation fails for some reason.
+   */
+  private int readFile()
+    throws IOException
+  {
+    long nRemainingBytes = endPosition_ - filePosition_;
+    if (nRemainingBytes <= 0)
+      return -1;
+
+    int nBytes;
+
+    if (isMemoryMapped_) {
+      if (mappedBuffer_ == null || !mappedBuffer_.hasRemaining()) {
+        long regionSize = Math.min(MAP_SIZE, nRemainingBytes);
+        mappedBuffer_ = fileChannel_.map(FileChannel.MapMode.READ_ONLY, filePosition_, regionSize);
+      }
+
+      nBytes = Math.min(buffer_.length, mappedBuffer_.remaining());
+      mappedBuffer_.get(buffer_, 0, nBytes);
+    }
+    else {
+      int length = (int) Math.min(buffer_.length, nRemainingBytes);
+      nBytes = fileChannel_.read(ByteBuffer.wrap(buffer_, 0, length), filePosition_);
+      if (nBytes < 0)
+        return -1;
+    }
+
+    filePosition_ += nBytes;
+
+    return nBytes;
+  }
+
+  /**
+   * Fill the buffer with the next block of content.
+   *
+   * @return  True if there is more content, false if end of stream is reached.
+   * @throws IOException  If the read operation fails for some reason.
+   */
+  private boolean fill()
+    throws IOException
+  {
+    bufferOffset_ += limit_;
+    position_ = 0;
+    limit_ = 0;
+
+    while (true) {
+      int nBytes = inputStream_ != null ? inputStream_.read(buffer_, 0, buffer_.length) : readFile();
+      if (nBytes < 0)
+        return false;
+
+      if (nBytes > 0) {
+        // Skip the UTF-8 byte order mark if present
+        if (bufferOffset_ == 0L && nBytes >= 3 &&
+            buffer_[0] == (byte) 0xef && buffer_[1] == (byte) 0xbb && buffer_[2] == (byte) 0xbf)
+          position_ = 3;
+
+        limit_ = nBytes;
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Return the stream position of the next byte to be read.
+   *
+   * @return  Position of the next byte to read. [0,&gt;.
+   */
+  long getPosition()
+  {
+    return bufferOffset_ + position_;
+  }
+
+  /**
+   * Return the number of bytes left to scan.
+   *
+   * @return  Number of bytes left to scan. [0,&gt;, or -1 if not known,
+   *          as is the case when reading from a stream.
+   */
+  long getNRemainingBytes()
+  {
+    return isFile() ? Math.max(endPosition_ - getPosition(), 0L) : -1L;
+  }
+
+  /**
+   * Return the next byte of the content and advance.
+   *
+   * @return  The next byte [0,255], or -1 if end of content is reached.
+   * @throws IOException  If the read operation fails for some reason.
+   */
+  int next()
+    throws IOException
+  {
+    if (position_ == limit_ && !fill())
+      return -1;
+
+    return buffer_[position_++] & 0xff;
+  }
+
+  /**
+   * Return the next byte of the content without advancing.
+   *
+   * @return  The next byte [0,255], or -1 if end of content is reached.
+   * @throws IOException  If the read operation fails for some reason.
+   */
+  private int peek()
+    throws IOException
+  {
+    if (position_ == limit_ && !fill())
+      return -1;
+
+    return buffer_[position_] & 0xff;
+  }
+
+  /**
+   * Return the next non-whitespace byte of the content and advance.
+   *
+   * @return  The next non-whitespace byte [0,255], or -1 if end of
+   *          content is reached.
+   * @throws IOException  If the read operation fails for some reason.
+   */
+  int nextNonSpace()
+    throws IOException
+  {
+    while (true) {
+      if (position_ == limit_ && !fill())
+        return -1;
+
+      int b = buffer_[position_++];
+      if (b != ' ' && b != '\n' && b != '\r' && b != '\t')
+        return b & 0xff;
+    }
+  }
+
+  /**
+   * Create an exception for invalid content at the current position.
+   *
+   * @param message  Error message. Non-null.
+   * @return         The requested exception. Never null.
+   */
+  IOException newException(String message)
+  {
+    assert message != null : "message cannot be null";
+    return new IOException("Invalid JSON content: " + message + " at position " + getPosition());
+  }
+
+  /**
+   * Consume the rest of the specified literal, like "null", "true" or "false".
+   *
+   * @param literal  The literal. Non-null. The first byte of the literal
+   *                 is assumed to be consumed already.
+   * @throws IOException  If the content doesn't match the literal,
+   *                 or the read operation fails for some reason.
+   */
+  void expect(String literal)
+    throws IOException
+  {
+    assert literal != null : "literal cannot be null";
+
+    for (int i = 1; i < literal.length(); i++) {
+      if (next() != literal.charAt(i))
+        throw newException("Expected " + literal);
+    }
+  }
+
+  /**
+   * Append the specified byte to the current token.
+   *
+   * @param b  Byte to append.
+   */
+  private void append(int b)
+  {
+    if (tokenLength_ == token_.length)
+      token_ = Arrays.copyOf(token_, 2 * token_.length);
+
+    token_[tokenLength_++] = (byte) b;
+  }
+
+  /**
+   * Read an escape sequence from the content. The leading
+   * backslash is assumed to be consumed already.
+   *
+   * @return  The escaped character.
+   * @throws IOException  If the content is invalid or the read operation
+   *                      fails for some reason.
+   */
+  private char readEscape()
+    throws IOException
+  {
+    int b = next();
+    switch (b) {
+      case '"'  : return '"';
+      case '\\' : return '\\';
+      case '/'  : return '/';
+      case 'b'  : return '\b';
+      case 'f'  : return '\f';
+      case 'n'  : return '\n';
+      case 'r'  : return '\r';
+      case 't'  : return '\t';
+      case 'u'  :
+        int c = 0;
+        for (int i = 0; i < 4; i++) {
+          int digit = Character.digit(next(), 16);
+          if (digit < 0)
+            throw newException("Invalid unicode escape");
+          c = (c << 4) | digit;
+        }
+        return (char) c;
+      default :
+        throw newException("Invalid escape sequence");
+    }
+  }
+
+  /**
+   * Read a multi-byte UTF-8 sequence from the content.
+   *
+   * @param leadingByte  The leading byte of the sequence, already consumed. [128,255].
+   * @return             The decoded code point. The unicode replacement
+   *                     character if the sequence is invalid.
+   * @throws IOException  If the read operation fails for some reason.
+   */
+  private int readUtf8(int leadingByte)
+    throws IOException
+  {
+    int nContinuationBytes;
+    int codePoint;
+
+    if ((leadingByte & 0xe0) == 0xc0) {
+      nContinuationBytes = 1;
+      codePoint = leadingByte & 0x1f;
+    }
+    else if ((leadingByte & 0xf0) == 0xe0) {
+      nContinuationBytes = 2;
+      codePoint = leadingByte & 0x0f;
+    }
+    else if ((leadingByte & 0xf8) == 0xf0) {
+      nContinuationBytes = 3;
+      codePoint = leadingByte & 0x07;
+    }
+    else {
+      return 0xfffd;
+    }
+
+    for (int i = 0; i < nContinuationBytes; i++) {
+      int b = peek();
+      if ((b & 0xc0) != 0x80)
+        return 0xfffd;
+
+      position_++;
+      codePoint = (codePoint << 6) | (b & 0x3f);
+    }
+
+    return Character.isValidCodePoint(codePoint) ? codePoint : 0xfffd;
+  }
+
+  /**
+   * Read a string from the content. The opening quote is assumed to be
+   * consumed already, and the closing quote is consumed by this method.
+   *
+   * @return  The string. Never null.
+   * @throws IOException  If the content is invalid or the read operation
+   *                      fails for some reason.
+   */
+  String readString()
+    throws IOException
+  {
+    int length = 0;
+
+    while (true) {
+      if (position_ == limit_ && !fill())
+        throw newException("Unterminated string");
+
+      int b = buffer_[position_++];
+
+      if (b == '"')
+        return newString(length);
+
+      if (length + 2 > chars_.length)
+        chars_ = Arrays.copyOf(chars_, 2 * chars_.length);
+
+      if (b == '\\') {
+        chars_[length++] = readEscape();
+      }
+      else if (b >= 0) {
+        chars_[length++] = (char) b;
+      }
+      else {
+        int codePoint = readUtf8(b & 0xff);
+        length += Character.toChars(codePoint, chars_, length);
+      }
+    }
+  }
+
+  /**
+   * Return the string of the specified number of characters of the
+   * current string. Short strings that have been read recently are
+   * returned as the same instance, so that repeated values such as
+   * those of string curves are not created over and over again.
+   *
+   * @param length  Number of characters of the string. [0,&gt;.
+   * @return        The string. Never null.
+   */
+  private String newString(int length)
+  {
+    if (length > MAX_POOLED_STRING_LENGTH)
+      return new String(chars_, 0, length);
+
+    // Same as String.hashCode()
+    int hash = 0;
+    for (int i = 0; i < length; i++)
+      hash = 31 * hash + chars_[i];
+
+    int slot = (hash ^ (hash >>> 16)) & (STRING_POOL_SIZE - 1);
+
+    String string = stringPool_[slot];
+    if (string != null && string.length() == length) {
+      int i = 0;
+      while (i < length && string.charAt(i) == chars_[i])
+        i++;
+      if (i == length)
+        return string;
+    }
+
+    string = new String(chars_, 0, length);
+    stringPool_[slot] = string;
+    return string;
+  }
+
+  /**
+   * Skip a string of the content. The opening quote is assumed to be
+   * consumed already, and the closing quote is consumed by this method.
+   *
+   * @param isCapturing  True to append the skipped bytes to the current token,
+   *                     false to just skip them.
+   * @throws IOException  If the content is invalid or the read operation
+   *                      fails for some reason.
+   */
+  private void skipString(boolean isCapturing)
+    throws IOException
+  {
+    while (true) {
+      if (position_ == limit_ && !fill())
+        throw newException("Unterminated string");
+
+      int b = buffer_[position_++];
+
+      if (isCapturing)
+        append(b);
+
+      if (b == '"')
+        return;
+
+      if (b == '\\') {
+        b = next();
+        if (isCapturing)
+          append(b);
+      }
+    }
+  }
+
+  /**
+   * Check if the specified byte can be part of a JSON number.
+   *
+   * @param b  Byte to check.
+   * @return   True if b can be part of a number, false otherwise.
+   */
+  private static boolean isNumberByte(int b)
+  {
+    return b >= '0' && b <= '9' || b == '.' || b == '-' || b == '+' || b == 'e' || b == 'E';
+  }
+
+  /**
+   * Read a number from the content.
+   *
+   * @param firstByte  The first byte of the number, already consumed.
+   * @return           The number as a double.
+   * @throws IOException  If the content is not a valid number or the read
+   *                   operation fails for some reason.
+   */
+  double readNumber(int firstByte)
+    throws IOException
+  {
+    assert position_ > 0 && buffer_[position_ - 1] == (byte) firstByte : "Invalid state";
+
+    try {
+      //
+      // Common case: The number is completely within the buffer
+      // and can be parsed from there.
+      //
+      int start = position_ - 1;
+      int end = position_;
+      while (end < limit_ && isNumberByte(buffer_[end]))
+        end++;
+
+      if (end < limit_) {
+        position_ = end;
+        return parseDouble(buffer_, start, end - start);
+      }
+
+      //
+      // Otherwise collect the number across buffer boundaries
+      //
+      tokenLength_ = 0;
+      for (int i = start; i < end; i++)
+        append(buffer_[i]);
+      position_ = end;
+
+      while (true) {
+        if (position_ == limit_ && !fill())
+          break;
+
+        int b = buffer_[position_];
+        if (!isNumberByte(b))
+          break;
+
+        append(b);
+        position_++;
+      }
+
+      return parseDouble(token_, 0, tokenLength_);
+    }
+    catch (NumberFormatException exception) {
+      throw newException("Invalid number");
+    }
+  }
+
+  /**
+   * Parse the specified ASCII bytes as a double.
+   * <p>
+   * The result is identical to that of Double.parseDouble(), but
+   * the common case of numbers with at most 15 significant digits
+   * and a moderate exponent is computed exactly without creating
+   * any objects. The exception is negative zero which is returned as 0.0,
+   * consistent with a conversion through BigDecimal.
+   *
+   * @param text    Bytes of number to parse. Non-null.
+   * @param offset  Offset of first byte of the number in text. [0,&gt;.
+   * @param length  Number of bytes of the number. [1,&gt;.
+   * @return        The parsed double value.
+   * @throws NumberFormatException  If text is not a valid number.
+   */
+  static double parseDouble(byte[] text, int offset, int length)
+  {
+    assert text != null : "text cannot be null";
+    assert offset >= 0 : "Invalid offset: " + offset;
+    assert length > 0 : "Invalid length: " + length;
+
+    int i = offset;
+    length += offset;
+
+    boolean isNegative = text[i] == '-';
+    if (isNegative)
+      i++;
+
+    long mantissa = 0L;
+    int nSignificantDigits = 0;
+    int exponent = 0;
+    boolean hasDigits = false;
+
+    // Integer part
+    for (; i < length && text[i] >= '0' && text[i] <= '9'; i++) {
+      hasDigits = true;
+      int digit = text[i] - '0';
+      if (nSignificantDigits > 0 || digit != 0) {
+        if (nSignificantDigits < 18)
+          mantissa = 10 * mantissa + digit;
+        else
+          exponent++;
+        nSignificantDigits++;
+      }
+    }
+
+    // Fraction part
+    if (i < length && text[i] == '.') {
+      for (i++; i < length && text[i] >= '0' && text[i] <= '9'; i++) {
+        hasDigits = true;
+        int digit = text[i] - '0';
+        if (nSignificantDigits > 0 || digit != 0) {
+          if (nSignificantDigits < 18) {
+            mantissa = 10 * mantissa + digit;
+            exponent--;
+          }
+          nSignificantDigits++;
+        }
+        else {
+          exponent--;
+        }
+      }
+    }
+
+    // Exponent part
+    if (i < length && (text[i] == 'e' || text[i] == 'E')) {
+      i++;
+      boolean isNegativeExponent = i < length && text[i] == '-';
+      if (i < length && (text[i] == '-' || text[i] == '+'))
+        i++;
+
+      int exponentValue = 0;
+      int nExponentDigits = 0;
+      for (; i < length && text[i] >= '0' && text[i] <= '9'; i++) {
+        if (exponentValue < 100000)
+          exponentValue = 10 * exponentValue + text[i] - '0';
+        nExponentDigits++;
+      }
+
+      if (nExponentDigits == 0)
+        hasDigits = false;
+
+      exponent += isNegativeExponent ? -exponentValue : exponentValue;
+    }
+
+    if (hasDigits && i == length && nSignificantDigits <= MAX_FAST_DIGITS &&
+        exponent >= -22 && exponent <= 22) {
+      double value = (double) mantissa;
+      value = exponent >= 0 ? value * POWERS_OF_TEN[exponent] : value / POWERS_OF_TEN[-exponent];
+      return isNegative && mantissa != 0L ? -value : value;
+    }
+
+    // Anything else goes the slow, but exact, way
+    double value = Double.parseDouble(new String(text, offset, length - offset, StandardCharsets.US_ASCII));
+    return value == 0.0 ? 0.0 : value;
+  }
+
+  /**
+   * Scan past a complete JSON value of the content.
+   *
+   * @param firstByte    First byte of the value, already consumed.
+   * @param isCapturing  True to append the bytes of the value to the
+   *                     current token, false to just skip them.
+   * @throws IOException  If the content is invalid or the read operation
+   *                     fails for some reason.
+   */
+  private void scanValue(int firstByte, boolean isCapturing)
+    throws IOException
+  {
+    if (isCapturing)
+      append(firstByte);
+
+    // String
+    if (firstByte == '"') {
+      skipString(isCapturing);
+      return;
+    }
+
+    // Object or array
+    if (firstByte == '{' || firstByte == '[') {
+      int level = 1;
+      while (level > 0) {
+        if (position_ == limit_ && !fill())
+          throw newException("Unexpected end of content");
+
+        int b = buffer_[position_++];
+
+        if (isCapturing)
+          append(b);
+
+        if (b == '"')
+          skipString(isCapturing);
+        else if (b == '{' || b == '[')
+          level++;
+        else if (b == '}' || b == ']')
+          level--;
+      }
+      return;
+    }
+
+    // Number or literal
+    while (true) {
+      int b = peek();
+      if (b == -1 || b == ',' || b == ']' || b == '}' ||
+          b == ' ' || b == '\n' || b == '\r' || b == '\t')
+        return;
+
+      if (isCapturing)
+        append(b);
+
+      position_++;
+    }
+  }
+
+  /**
+   * Skip a complete JSON value of the content.
+   *
+   * @param firstByte  First byte of the value, already consumed.
+   * @throws IOException  If the content is invalid or the read operation
+   *                   fails for some reason.
+   */
+  void skipValue(int firstByte)
+    throws IOException
+  {
+    scanValue(firstByte, false);
+  }
+
+  /**
+   * Read a complete JSON value of the content and return its bytes.
+   *
+   * @param firstByte  First byte of the value, already consumed.
+   * @return           The bytes of the value, including firstByte. Never null.
+   * @throws IOException  If the content is invalid or the read operation
+   *                   fails for some reason.
+   */
+  byte[] readValue(int firstByte)
+    throws IOException
+  {
+    tokenLength_ = 0;
+    scanValue(firstByte, true);
+    return Arrays.copyOf(token_, tokenLength_);
+  }
+}
@@ -1,13 +1,17 @@
 package no.petroware.logio.json;
 
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinTask;
 
 import javax.json.Json;
 import javax.json.JsonArray;
 import javax.json.JsonArrayBuilder;
+import javax.json.JsonBuilderFactory;
 import javax.json.JsonNumber;
 import javax.json.JsonObject;
 import javax.json.JsonObjectBuilder;
@@ -25,6 +29,13 @@ import no.petroware.logio.util.Util;
  */
 final class JsonUtil
 {
+  /**
+   * Factory for JSON builders. Json.createObjectBuilder() and friends
+   * look up the JSON provider on every call which is expensive, so
+   * we keep a single factory for the lifetime of the module.
+   */
+  private static final JsonBuilderFactory BUILDER_FACTORY = Json.createBuilderFactory(null);
+
   /**
    * Private constructor to prevent client instantiation.
    */
@@ -42,12 +53,83 @@ final class JsonUtil
    */
   static String encode(String text)
   {
-    // We could scan the text and escape as necessary.
-    // Better is to let javax.json fix this, but as there is no public
+    assert text != null : "text cannot be null";
+
+    // Most texts need no escaping at all, in which case
+    // we just add the quotes
+    if (!needsEscape(text))
+      return '"' + text + '"';
+
+    // Otherwise we let javax.json fix this, but as there is no public
     // method that does this conversion we add the text to a phony JSON
-    // object and then extract it again. Probably not as efficient, but
-    // JSON Well Log Format doesn't include many strings anyway.
-    return Json.createObjectBuilder().add("x", text).build().get("x").toString();
+    // object and then extract it again.
+    return createObjectBuilder().add("x", text).build().get("x").toString();
+  }
+
+  /**
+   * Check if the specified text contains characters that must be
+   * escaped in a JSON string literal.
+   *
+   * @param text  Text to check. Non-null.
+   * @return      True if the text must be escaped, false otherwise.
+   */
+  private static boolean needsEscape(String text)
+  {
+    assert text != null : "text cannot be null";
+
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      if (c < 0x20 || c == '"' || c == '\\')
+        return true;
+    }
+
+    return false;
+  }
+
+  /**
+   * Wait for the specified task to complete and return its result.
+   *
+   * @param task  Task to get result of. Non-null.
+   * @return      The result of the task.
+   * @throws IOException  If the task failed for some reason.
+   * @throws InterruptedException  If the thread is interrupted while waiting.
+   */
+  static <T> T getResult(ForkJoinTask<T> task)
+    throws IOException, InterruptedException
+  {
+    assert task != null : "task cannot be null";
+
+    try {
+      return task.get();
+    }
+    catch (ExecutionException exception) {
+      Throwable cause = exception.getCause();
+      if (cause instanceof IOException)
+        throw (IOException) cause;
+      if (cause instanceof RuntimeException)
+        throw (RuntimeException) cause;
+      throw new IOException(cause);
+    }
+  }
+
+  /**
+   * Create a new JSON object builder.
+   *
+   * @return  A new JSON object builder. Never null.
+   */
+  static JsonObjectBuilder createObjectBuilder()
+  {
+    return BUILDER_FACTORY.createObjectBuilder();
+  }
+
+  /**
+   * Create a new JSON array builder.
+   *
+   * @return  A new JSON array builder. Never null.
+   */
+  static JsonArrayBuilder createArrayBuilder()
+  {
+    return BUILDER_FACTORY.createArrayBuilder();
   }
 
   /**
@@ -250,7 +332,7 @@ final class JsonUtil
   {
     assert jsonParser != null : "jsonParser cannot be null";
 
-    JsonArrayBuilder arrayBuilder = Json.createArrayBuilder();
+    JsonArrayBuilder arrayBuilder = createArrayBuilder();
 
     while (jsonParser.hasNext()) {
       JsonParser.Event parseEvent = jsonParser.next();
@@ -312,7 +394,7 @@ final class JsonUtil
   {
     assert jsonParser != null : "jsonParser cannot be null";
 
-    JsonObjectBuilder objectBuilder = Json.createObjectBuilder();
+    JsonObjectBuilder objectBuilder = createObjectBuilder();
 
     String key = null;
 
@@ -399,9 +481,9 @@ final class JsonUtil
     double averageStep = 0.0;
 
     int nSteps = 0;
-    double indexValue0 = Util.getAsDouble(indexCurve.getValue(0));
+    double indexValue0 = indexCurve.getDouble(0);
     for (int index = 1; index < nValues; index++) {
-      double indexValue1 = Util.getAsDouble(indexCurve.getValue(index));
+      double indexValue1 = indexCurve.getDouble(index);
       double step = indexValue1 - indexValue0;
 
       nSteps++;
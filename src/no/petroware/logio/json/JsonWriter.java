@@ -1,20 +1,21 @@
 package no.petroware.logio.json;
 
-import java.io.BufferedWriter;
 import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
 import java.io.Writer;
-import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Date;
-import java.util.HashMap;
+import java.util.Deque;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 import javax.json.JsonArray;
 import javax.json.JsonObject;
@@ -56,6 +57,12 @@ public final class JsonWriter
   /** Platform independent new-line string. */
   private static String NEWLINE = System.getProperty("line.separator");
 
+  /** Spaces for padding values in pretty print mode. */
+  private static final char[] SPACES = "                                                                ".toCharArray();
+
+  /** Approximate number of values (256K) of each block of rows during parallel write. */
+  private static final int DATA_BLOCK_SIZE = 1 << 18;
+
   /** The physical disk file to write. */
   private final File file_;
 
@@ -81,14 +88,29 @@ public final class JsonWriter
   private final Indentation indentation_;
 
   /** The writer instance. */
-  private Writer writer_;
+  private Utf8Writer writer_;
 
   /** Indicate if the last written JSON file contains data or not. */
   private boolean hasData_;
 
+  /** Buffer for the text of a data value. Reused for all values. */
+  private final StringBuilder text_ = new StringBuilder();
+
+  /**
+   * Number of leading values of each curve to decide number format and
+   * column width from. Null to decide from all values.
+   */
+  private Integer sampleSize_ = null;
+
+  /** True if curve data should be formatted in parallel, false to format sequentially. */
+  private boolean isParallel_ = false;
+
   /**
    * Class for holding a space indentation as used at the beginning
    * of the line when writing in pretty print mode to disk file.
+   * <p>
+   * The indentation levels are linked, and each level is created only
+   * once, so that moving between levels creates no objects.
    *
    * @author <a href="mailto:info@petroware.no">Petroware AS</a>
    */
@@ -100,42 +122,51 @@ public final class JsonWriter
     /** The actual indentation string. */
     private final String indent_;
 
+    /** Indentation one level to the left. Null if this is the outermost level. */
+    private final Indentation previous_;
+
+    /** Indentation one level to the right. Created on demand. */
+    private Indentation next_ = null;
+
     /**
      * Create an indentation instance of the specified unit,
-     * and an initial indentation.
+     * one level to the right of the specified indentation.
      *
-     * @param unit         Number of characters per indentation. [0,&gt;.
-     * @param indentation  Current indentation. Non-null.
+     * @param unit      Number of characters per indentation. [0,&gt;.
+     * @param previous  Indentation one level to the left. Null to create
+     *                  the outermost level, which has no indentation.
      */
-    private Indentation(int unit, String indentation)
+    private Indentation(int unit, Indentation previous)
     {
       assert unit >= 0 : "Invalid unit: " + unit;
-      assert indentation != null : "indentation cannot be null";
 
       unit_ = unit;
-      indent_ = indentation;
+      previous_ = previous;
+      indent_ = previous != null ? Util.getSpaces(previous.indent_.length() + unit) : "";
     }
 
     /**
-     * Create a new indentation instance indented one level to the right.
+     * Return the indentation instance indented one level to the right.
      *
      * @return  The requested indentation instance. Never null.
      */
     private Indentation push()
     {
-      int indentation = indent_.length() + unit_;
-      return new Indentation(unit_, Util.getSpaces(indentation));
+      if (next_ == null)
+        next_ = new Indentation(unit_, this);
+
+      return next_;
     }
 
     /**
-     * Create a new indentation instance indented one level to the left.
+     * Return the indentation instance indented one level to the left.
+     * The outermost level is returned as is.
      *
      * @return  The requested indentation instance. Never null.
      */
     private Indentation pop()
     {
-      int indentation = Math.max(0, indent_.length() - unit_);
-      return new Indentation(unit_, Util.getSpaces(indentation));
+      return previous_ != null ? previous_ : this;
     }
 
     /** {@inheritDoc} */
@@ -169,7 +200,7 @@ public final class JsonWriter
     isPretty_ = isPretty;
     newline_ = isPretty_ ? NEWLINE : "";
     spacing_ = isPretty_ ? " " : "";
-    indentation_ = new Indentation(isPretty ? indentation : 0, "");
+    indentation_ = new Indentation(isPretty ? indentation : 0, null);
   }
 
   /**
@@ -195,7 +226,7 @@ public final class JsonWriter
     isPretty_ = isPretty;
     newline_ = isPretty_ ? NEWLINE : "";
     spacing_ = isPretty_ ? " " : "";
-    indentation_ = new Indentation(isPretty ? indentation : 0, "");
+    indentation_ = new Indentation(isPretty ? indentation : 0, null);
   }
 
   /**
@@ -210,6 +241,62 @@ public final class JsonWriter
     this(file, true, 2);
   }
 
+  /**
+   * Specify the number of leading non-null values of each curve to decide
+   * the number format and column width of the curve from.
+   * <p>
+   * By default these are decided from all the values of a curve, which
+   * gives the most compact format and exact column alignment, but means
+   * that the curve is copied and every value is formatted twice. With a
+   * sample the curve data is written in a single pass with each value
+   * formatted once. Values beyond the sample that need more decimals than
+   * the format of the curve are formatted with the decimals they need, or
+   * in scientific notation, and values wider than the column are written
+   * without padding. A sample size of 0 turns off column alignment in
+   * pretty print mode altogether.
+   *
+   * @param sampleSize  Number of leading non-null values of each curve to
+   *                    decide the format from. [0,&gt;. Null to use all values.
+   * @throws IllegalArgumentException  If sampleSize is negative.
+   */
+  public void setSampleSize(Integer sampleSize)
+  {
+    if (sampleSize != null && sampleSize < 0)
+      throw new IllegalArgumentException("Invalid sampleSize: " + sampleSize);
+
+    sampleSize_ = sampleSize;
+  }
+
+  /**
+   * Return the number of leading values of each curve to base number
+   * formats and column widths on.
+   *
+   * @return  Number of leading values to decide formats from. [0,&gt;.
+   */
+  private int getNSampleValues()
+  {
+    return sampleSize_ != null ? sampleSize_ : Integer.MAX_VALUE;
+  }
+
+  /**
+   * Specify if curve data should be formatted in parallel.
+   * <p>
+   * In parallel mode the rows of the data section of a large log are split
+   * into blocks that are formatted concurrently on the common fork-join
+   * pool, each into a buffer of its own. The buffers are written to the
+   * output in order, and the result is identical to that of a sequential
+   * write. Only a limited number of blocks are kept in memory at any time.
+   * <p>
+   * The curves of the log must not be modified while it is being
+   * written. Default is false.
+   *
+   * @param isParallel  True to format in parallel, false to format sequentially.
+   */
+  public void setParallel(boolean isParallel)
+  {
+    isParallel_ = isParallel;
+  }
+
   /**
    * Get the specified string token as a quoted text suitable for writing to
    * a JSON disk file, i.e. "null" if null, or properly escaped if non-null.
@@ -227,38 +314,61 @@ public final class JsonWriter
    *
    * @param curve      Curve to compute column width of. Non-null.
    * @param formatter  Curve data formatter. Null if N/A for the specified curve.
+   * @param isSampled  True if the formatter is created from a sample of the
+   *                   curve values, false if from all of them.
+   * @param nValues    Number of leading non-null values of each curve dimension
+   *                   to consider. [0,&gt;.
    * @return           Width of widest element of the curve. [0,&gt;.
    */
-  private static int computeColumnWidth(JsonCurve curve, Formatter formatter)
+  private static int computeColumnWidth(JsonCurve curve, Formatter formatter, boolean isSampled, int nValues)
   {
     assert curve != null :  "curve cannot be null";
+    assert nValues >= 0 : "Invalid nValues: " + nValues;
 
     int columnWidth = 0;
     Class<?> valueType = curve.getValueType();
 
-    for (int index = 0; index < curve.getNValues(); index++) {
-      for (int dimension = 0; dimension < curve.getNDimensions(); dimension++) {
-        Object value = curve.getValue(dimension, index);
+    int nDimensions = curve.getNDimensions();
+    int nCurveValues = curve.getNValues();
 
-        String text;
+    // Leading null rows are not part of the sample, as for the formatter
+    long nMaxSampleValues = (long) Math.min(nValues, nCurveValues) * nDimensions;
+    long nSampleValues = 0;
 
-        if (value == null)
-          text = "null";
+    // Numeric values are measured without creating strings
+    StringBuilder s = new StringBuilder();
 
-        else if (valueType == Date.class)
-          text = "2018-10-10T12:20:00Z"; // Template
+    for (int index = 0; index < nCurveValues && nSampleValues < nMaxSampleValues; index++) {
+      for (int dimension = 0; dimension < nDimensions; dimension++) {
+        int length;
+        boolean isNull = curve.isNull(dimension, index);
+
+        if (isNull)
+          length = "null".length();
 
-        else if (formatter != null)
-          text = formatter.format(Util.getAsDouble(value));
+        else if (valueType == Date.class)
+          length = "2018-10-10T12:20:00Z".length(); // Template
+
+        else if (formatter != null) {
+          s.setLength(0);
+          if (isSampled)
+            formatter.formatAccurately(curve.getDouble(dimension, index), s);
+          else
+            formatter.format(curve.getDouble(dimension, index), s);
+          length = s.length();
+        }
 
         else if (valueType == String.class)
-          text = getQuotedText(value.toString());
+          length = getQuotedText(curve.getValue(dimension, index).toString()).length();
 
         else // Boolean and Integers
-          text = value.toString();
+          length = curve.getValue(dimension, index).toString().length();
+
+        if (length > columnWidth)
+          columnWidth = length;
 
-        if (text.length() > columnWidth)
-          columnWidth = text.length();
+        if (!isNull)
+          nSampleValues++;
       }
     }
 
@@ -266,39 +376,82 @@ public final class JsonWriter
   }
 
   /**
-   * Get the specified data value as text, according to the specified value type,
+   * Write the specified number of spaces to the specified writer.
+   *
+   * @param writer  Writer to write to. Non-null.
+   * @param n       Number of spaces to write. If &lt;= 0 nothing is written.
+   * @throws IOException  If the write operation fails for some reason.
+   */
+  private static void writeSpaces(Writer writer, int n)
+    throws IOException
+  {
+    assert writer != null : "writer cannot be null";
+
+    while (n > 0) {
+      int length = Math.min(n, SPACES.length);
+      writer.write(SPACES, 0, length);
+      n -= length;
+    }
+  }
+
+  /**
+   * Write the specified data value as text, according to the value type of the curve,
    * the curve formatter, the curve width and the general rules for the JSON format.
+   * <p>
+   * The text is built in a buffer that is reused for all values, and is
+   * encoded directly from there, so that numeric values are written
+   * without creating any objects.
    *
-   * @param value      Curve value to get as text. May be null, in case "null" is returned.
-   * @param valueType  Java value type of the curve of the value. Non-null.
+   * @param writer     Writer to write to. Non-null.
+   * @param text       Buffer for the text of the value. Non-null.
+   * @param curve      Curve of the value. Non-null.
+   * @param dimension  Dimension of the value. [0,nDimensions&gt;.
+   * @param index      Position of the value. [0,nValues&gt;.
+   *                   If the value is absent, "null" is written.
    * @param formatter  Curve formatter. Specified for floating point values only, null otherwise,
+   * @param isSampled  True if the formatter is created from a sample of the
+   *                   curve values, false if from all of them.
    * @param width      Total with set aside for the values of this column. [0,&gt;.
-   * @return           The JSON token to be written to file. Never null.
+   * @throws IOException  If the write operation fails for some reason.
    */
-  private String getText(Object value, Class<?> valueType, Formatter formatter, int width)
+  private void writeText(Writer writer, StringBuilder text,
+                         JsonCurve curve, int dimension, int index, Formatter formatter,
+                         boolean isSampled, int width)
+    throws IOException
   {
-    assert valueType != null : "valueType cannot be null";
+    assert writer != null : "writer cannot be null";
+    assert text != null : "text cannot be null";
+    assert curve != null : "curve cannot be null";
     assert width >= 0 : "Invalid width: " + width;
 
-    String text = null;
+    Class<?> valueType = curve.getValueType();
+
+    text.setLength(0);
 
-    if (value == null)
-      text = "null";
+    // Numeric values are formatted without boxing
+    if (curve.isNull(dimension, index))
+      text.append("null");
+    else if (formatter != null && isSampled)
+      formatter.formatAccurately(curve.getDouble(dimension, index), text);
+    else if (formatter != null)
+      formatter.format(curve.getDouble(dimension, index), text);
     else if (valueType == Date.class)
-      text = '\"' + ISO8601DateParser.toString((Date) value) + '\"';
+      text.append('\"').append(ISO8601DateParser.toString(new Date(curve.getEpochMillis(dimension, index)))).append('\"');
     else if (valueType == Boolean.class)
-      text = value.toString();
-    else if (formatter != null)
-      text = formatter.format(Util.getAsDouble(value));
+      text.append(curve.getValue(dimension, index).toString());
+    else if (valueType == Integer.class || valueType == Long.class || valueType == Short.class || valueType == Byte.class)
+      text.append(curve.getLong(dimension, index));
     else if (Number.class.isAssignableFrom(valueType))
-      text = value.toString();
+      text.append(curve.getValue(dimension, index).toString());
     else if (valueType == String.class)
-      text = getQuotedText(value.toString());
+      text.append(getQuotedText(curve.getValue(dimension, index).toString()));
     else
       assert false : "Unrecognized valueType: " + valueType;
 
-    String padding = isPretty_ ? Util.getSpaces(width - text.length()) : "";
-    return padding + text;
+    if (isPretty_)
+      writeSpaces(writer, width - text.length());
+
+    writer.append(text);
   }
 
   /**
@@ -453,7 +606,7 @@ public final class JsonWriter
     assert log != null : "log cannot be null";
 
     JsonCurve indexCurve = log.getNCurves() > 0 ? log.getCurves().get(0) : null;
-    Formatter indexCurveFormatter = indexCurve != null ? log.createFormatter(indexCurve, true) : null;
+    Formatter indexCurveFormatter = indexCurve != null ? log.createFormatter(indexCurve, true, getNSampleValues()) : null;
 
     writer_.write('{');
 
@@ -480,7 +633,13 @@ public final class JsonWriter
       //
       if (indexCurveFormatter != null && (key.equals("startIndex") || key.equals("endIndex") || key.equals("step"))) {
         double v = Util.getAsDouble(JsonUtil.getValue(value));
-        String text = Double.isFinite(v) ? indexCurveFormatter.format(v) : "null";
+        String text;
+        if (!Double.isFinite(v))
+          text = "null";
+        else if (sampleSize_ != null)
+          text = indexCurveFormatter.formatAccurately(v);
+        else
+          text = indexCurveFormatter.format(v);
         writer_.write(text);
       }
       else {
@@ -514,70 +673,192 @@ public final class JsonWriter
 
     List<JsonCurve> curves = log.getCurves();
 
+    int nSampleValues = getNSampleValues();
+    boolean isSampled = sampleSize_ != null;
+
     // Create formatters for each curve
-    Map<JsonCurve,Formatter> formatters = new HashMap<>();
+    Formatter[] formatters = new Formatter[log.getNCurves()];
+    for (int curveNo = 0; curveNo < log.getNCurves(); curveNo++) {
+      JsonCurve curve = curves.get(curveNo);
+      formatters[curveNo] = log.createFormatter(curve, curveNo == 0, nSampleValues);
+    }
+
+    // Compute column width for each data column. Only needed for alignment.
+    int[] columnWidths = new int[log.getNCurves()];
     for (int curveNo = 0; curveNo < log.getNCurves(); curveNo++) {
       JsonCurve curve = curves.get(curveNo);
-      formatters.put(curve, log.createFormatter(curve, curveNo == 0));
+      columnWidths[curveNo] = isPretty_ ? computeColumnWidth(curve, formatters[curveNo], isSampled, nSampleValues) : 0;
     }
 
-    // Compute column width for each data column
-    Map<JsonCurve,Integer> columnWidths = new HashMap<>();
+    int nValues = log.getNValues();
+
+    // Number of values in a row of data
+    int nRowValues = 0;
     for (JsonCurve curve : curves)
-      columnWidths.put(curve, computeColumnWidth(curve, formatters.get(curve)));
+      nRowValues += curve.getNDimensions();
+
+    // Small logs are not worth splitting up
+    boolean isParallel = isParallel_ &&
+                         ForkJoinPool.getCommonPoolParallelism() > 1 &&
+                         (long) nValues * nRowValues > DATA_BLOCK_SIZE;
+
+    if (isParallel)
+      writeRowsParallel(indentation, curves, formatters, columnWidths, isSampled, nValues,
+                        Math.max(DATA_BLOCK_SIZE / Math.max(nRowValues, 1), 1));
+    else
+      writeRows(writer_, text_, indentation, curves, formatters, columnWidths, isSampled, 0, nValues, nValues);
+  }
+
+  /**
+   * Write the specified rows of curve data to the specified writer.
+   *
+   * @param writer        Writer to write to. Non-null.
+   * @param text          Buffer for the text of each value. Non-null.
+   * @param indentation   Indentation of the rows. Non-null.
+   * @param curves        Curves to write data of. Non-null.
+   * @param formatters    Formatter of each curve. Entries are null
+   *                      for curves that are not floating point. Non-null.
+   * @param columnWidths  Column width of each curve. Non-null.
+   * @param isSampled     True if the formatters are created from a sample of
+   *                      the curve values, false if from all of them.
+   * @param fromIndex     First row to write, inclusive. [0,nValues].
+   * @param toIndex       Last row to write, exclusive. [fromIndex,nValues].
+   * @param nValues       Total number of rows of the curves. [0,&gt;.
+   * @throws IOException  If the write operation fails for some reason.
+   */
+  private void writeRows(Writer writer, StringBuilder text, Indentation indentation,
+                         List<JsonCurve> curves, Formatter[] formatters, int[] columnWidths,
+                         boolean isSampled, int fromIndex, int toIndex, int nValues)
+    throws IOException
+  {
+    assert writer != null : "writer cannot be null";
+    assert text != null : "text cannot be null";
+    assert indentation != null : "indentation cannot be null";
+    assert curves != null : "curves cannot be null";
+    assert formatters != null : "formatters cannot be null";
+    assert columnWidths != null : "columnWidths cannot be null";
+    assert fromIndex >= 0 && fromIndex <= toIndex && toIndex <= nValues : "Invalid range: " + fromIndex + " - " + toIndex;
+
+    String indent = indentation.toString();
+    int nCurves = curves.size();
 
-    for (int index = 0; index < log.getNValues(); index++) {
-      for (int curveNo = 0; curveNo < log.getNCurves(); curveNo++) {
+    for (int index = fromIndex; index < toIndex; index++) {
+      for (int curveNo = 0; curveNo < nCurves; curveNo++) {
         JsonCurve curve = curves.get(curveNo);
-        Class<?> valueType = curve.getValueType();
         int nDimensions = curve.getNDimensions();
-        int width = columnWidths.get(curve);
-        Formatter formatter = formatters.get(curve);
+        int width = columnWidths[curveNo];
+        Formatter formatter = formatters[curveNo];
 
         if (curveNo == 0) {
-          writer_.write(indentation.toString());
-          writer_.write('[');
+          writer.write(indent);
+          writer.write('[');
         }
 
         if (nDimensions > 1) {
           if (curveNo > 0) {
-            writer_.write(',');
-            writer_.write(spacing_);
+            writer.write(',');
+            writer.write(spacing_);
           }
 
-          writer_.write('[');
+          writer.write('[');
           for (int dimension = 0; dimension < nDimensions; dimension ++) {
-            Object value = curve.getValue(dimension, index);
-            String text = getText(value, valueType, formatter, width);
-
             if (dimension > 0) {
-              writer_.write(',');
-              writer_.write(spacing_);
+              writer.write(',');
+              writer.write(spacing_);
             }
 
-            writer_.write(text);
+            writeText(writer, text, curve, dimension, index, formatter, isSampled, width);
           }
-          writer_.write(']');
+          writer.write(']');
         }
         else {
-          Object value = curve.getValue(0, index);
-          String text = getText(value, valueType, formatter, width);
-
           if (curveNo > 0) {
-            writer_.write(',');
-            writer_.write(spacing_);
+            writer.write(',');
+            writer.write(spacing_);
           }
 
-          writer_.write(text);
+          writeText(writer, text, curve, 0, index, formatter, isSampled, width);
         }
       }
 
-      writer_.write(']');
-      if (index < log.getNValues() - 1) {
-        writer_.write(',');
-        writer_.write(newline_);
+      writer.write(']');
+      if (index < nValues - 1) {
+        writer.write(',');
+        writer.write(newline_);
+      }
+    }
+  }
+
+  /**
+   * Write all rows of curve data to the writer of this instance, by
+   * formatting blocks of rows in parallel.
+   * <p>
+   * Each block is formatted into a buffer of its own, and the buffers
+   * are written in order as they complete. At most two blocks per thread
+   * of the pool are in progress at any time to limit memory usage.
+   *
+   * @param indentation    Indentation of the rows. Non-null.
+   * @param curves         Curves to write data of. Non-null.
+   * @param formatters     Formatter of each curve. Entries are null
+   *                       for curves that are not floating point. Non-null.
+   * @param columnWidths   Column width of each curve. Non-null.
+   * @param isSampled      True if the formatters are created from a sample of
+   *                       the curve values, false if from all of them.
+   * @param nValues        Total number of rows of the curves. [0,&gt;.
+   * @param nBlockValues   Number of rows of each block. [1,&gt;.
+   * @throws IOException  If the write operation fails for some reason.
+   */
+  private void writeRowsParallel(Indentation indentation, List<JsonCurve> curves,
+                                 Formatter[] formatters, int[] columnWidths, boolean isSampled,
+                                 int nValues, int nBlockValues)
+    throws IOException
+  {
+    assert indentation != null : "indentation cannot be null";
+    assert curves != null : "curves cannot be null";
+    assert formatters != null : "formatters cannot be null";
+    assert columnWidths != null : "columnWidths cannot be null";
+    assert nValues >= 0 : "Invalid nValues: " + nValues;
+    assert nBlockValues > 0 : "Invalid nBlockValues: " + nBlockValues;
+
+    ForkJoinPool pool = ForkJoinPool.commonPool();
+    int maxNTasks = 2 * pool.getParallelism();
+
+    Deque<ForkJoinTask<ByteArrayOutputStream>> tasks = new ArrayDeque<>();
+
+    try {
+      int fromIndex = 0;
+      while (fromIndex < nValues || !tasks.isEmpty()) {
+
+        // Keep the pool busy with the next blocks
+        while (fromIndex < nValues && tasks.size() < maxNTasks) {
+          int startIndex = fromIndex;
+          int endIndex = (int) Math.min((long) fromIndex + nBlockValues, nValues);
+
+          tasks.add(pool.submit(() -> {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            Utf8Writer writer = new Utf8Writer(bytes);
+            writeRows(writer, new StringBuilder(), indentation, curves, formatters, columnWidths,
+                      isSampled, startIndex, endIndex, nValues);
+            writer.flush();
+            return bytes;
+          }));
+
+          fromIndex = endIndex;
+        }
+
+        // Write the next block in order
+        writer_.writeEncoded(JsonUtil.getResult(tasks.removeFirst()));
       }
     }
+    catch (InterruptedException exception) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Write interrupted");
+    }
+    finally {
+      // In case of failure, skip the tasks not yet started
+      for (ForkJoinTask<ByteArrayOutputStream> task : tasks)
+        task.cancel(false);
+    }
   }
 
   /**
@@ -601,7 +882,7 @@ public final class JsonWriter
     // Create the writer on first write operation
     if (isFirstLog) {
       OutputStream outputStream = file_ != null ? new FileOutputStream(file_) : outputStream_;
-      writer_ = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+      writer_ = new Utf8Writer(outputStream);
       writer_.write('[');
       writer_.write(newline_);
     }
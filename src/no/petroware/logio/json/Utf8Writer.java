@@ -0,0 +1,267 @@
+package no.petroware.logio.json;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+
+/**
+ * A writer that encodes characters as UTF-8 directly into a byte buffer,
+ * which is written to the underlying stream as it fills up.
+ * <p>
+ * This replaces the combination of a BufferedWriter and an OutputStreamWriter,
+ * which copies all content through an extra character buffer and a general
+ * purpose charset encoder. JSON Well Log Format content is mostly ASCII,
+ * which is stored as single bytes without any further processing.
+ * <p>
+ * Unpaired surrogate characters are written as '?' in the same way as
+ * by an OutputStreamWriter. Unlike other writers this class is not
+ * thread safe.
+ *
+ * @author <a href="mailto:info@petroware.no">Petroware AS</a>
+ */
+final class Utf8Writer extends Writer
+{
+  /** Default size of the byte buffer. */
+  private static final int BUFFER_SIZE = 65536;
+
+  /** The stream to write to. Non-null. */
+  private final OutputStream outputStream_;
+
+  /** Buffer of encoded bytes not yet written to the stream. */
+  private final byte[] buffer_;
+
+  /** Number of bytes in the buffer. [0,buffer.length]. */
+  private int position_ = 0;
+
+  /** High surrogate waiting for its low surrogate. 0 if none. */
+  private char highSurrogate_ = 0;
+
+  /** True if the writer is closed, false otherwise. */
+  private boolean isClosed_ = false;
+
+  /**
+   * Create a UTF-8 writer on the specified stream.
+   *
+   * @param outputStream  Stream to write to. Non-null.
+   */
+  Utf8Writer(OutputStream outputStream)
+  {
+    assert outputStream != null : "outputStream cannot be null";
+
+    outputStream_ = outputStream;
+    buffer_ = new byte[BUFFER_SIZE];
+  }
+
+  /**
+   * Write the content of the buffer to the stream and empty it.
+   *
+   * @throws IOException  If the write operation fails for some reason.
+   */
+  private void flushBuffer()
+    throws IOException
+  {
+    if (position_ > 0) {
+      outputStream_.write(buffer_, 0, position_);
+      position_ = 0;
+    }
+  }
+
+  /**
+   * Check that this writer is not closed.
+   *
+   * @throws IOException  If the writer is closed.
+   */
+  private void checkOpen()
+    throws IOException
+  {
+    if (isClosed_)
+      throw new IOException("Writer is closed");
+  }
+
+  /**
+   * Encode the specified character into the buffer.
+   *
+   * @param c  Character to encode.
+   * @throws IOException  If flushing the buffer fails for some reason.
+   */
+  private void encode(char c)
+    throws IOException
+  {
+    // Room for the longest encoding
+    if (position_ > buffer_.length - 4)
+      flushBuffer();
+
+    if (highSurrogate_ != 0) {
+      char highSurrogate = highSurrogate_;
+      highSurrogate_ = 0;
+
+      if (Character.isLowSurrogate(c)) {
+        int codePoint = Character.toCodePoint(highSurrogate, c);
+        buffer_[position_++] = (byte) (0xf0 | (codePoint >> 18));
+        buffer_[position_++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+        buffer_[position_++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+        buffer_[position_++] = (byte) (0x80 | (codePoint & 0x3f));
+        return;
+      }
+
+      // Unpaired high surrogate
+      buffer_[position_++] = '?';
+    }
+
+    if (c < 0x80)
+      buffer_[position_++] = (byte) c;
+
+    else if (c < 0x800) {
+      buffer_[position_++] = (byte) (0xc0 | (c >> 6));
+      buffer_[position_++] = (byte) (0x80 | (c & 0x3f));
+    }
+
+    else if (Character.isHighSurrogate(c))
+      highSurrogate_ = c;
+
+    // Unpaired low surrogate
+    else if (Character.isLowSurrogate(c))
+      buffer_[position_++] = '?';
+
+    else {
+      buffer_[position_++] = (byte) (0xe0 | (c >> 12));
+      buffer_[position_++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+      buffer_[position_++] = (byte) (0x80 | (c & 0x3f));
+    }
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void write(int c)
+    throws IOException
+  {
+    checkOpen();
+    encode((char) c);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void write(char[] cbuf, int offset, int length)
+    throws IOException
+  {
+    checkOpen();
+
+    if (offset < 0 || length < 0 || offset + length > cbuf.length)
+      throw new IndexOutOfBoundsException("Offset: " + offset + " Length: " + length);
+
+    for (int i = offset; i < offset + length; i++) {
+      char c = cbuf[i];
+
+      // ASCII is stored as is
+      if (c < 0x80 && highSurrogate_ == 0 && position_ < buffer_.length)
+        buffer_[position_++] = (byte) c;
+      else
+        encode(c);
+    }
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void write(String s, int offset, int length)
+    throws IOException
+  {
+    append(s, offset, offset + length);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Writer append(CharSequence s)
+    throws IOException
+  {
+    CharSequence text = s != null ? s : "null";
+    return append(text, 0, text.length());
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * The characters are encoded directly from the sequence, without
+   * converting it to a string first.
+   */
+  @Override
+  public Writer append(CharSequence s, int start, int end)
+    throws IOException
+  {
+    checkOpen();
+
+    CharSequence text = s != null ? s : "null";
+
+    if (start < 0 || start > end || end > text.length())
+      throw new IndexOutOfBoundsException("Start: " + start + " End: " + end);
+
+    for (int i = start; i < end; i++) {
+      char c = text.charAt(i);
+
+      // ASCII is stored as is
+      if (c < 0x80 && highSurrogate_ == 0 && position_ < buffer_.length)
+        buffer_[position_++] = (byte) c;
+      else
+        encode(c);
+    }
+
+    return this;
+  }
+
+  /**
+   * Write the specified content that is already encoded as UTF-8,
+   * typically by another instance of this class.
+   *
+   * @param bytes  Encoded content to write. Non-null.
+   * @throws IOException  If the write operation fails for some reason.
+   */
+  void writeEncoded(ByteArrayOutputStream bytes)
+    throws IOException
+  {
+    assert bytes != null : "bytes cannot be null";
+
+    checkOpen();
+
+    // A pending high surrogate would end up after the content
+    if (highSurrogate_ != 0) {
+      highSurrogate_ = 0;
+      encode('?');
+    }
+
+    flushBuffer();
+    bytes.writeTo(outputStream_);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void flush()
+    throws IOException
+  {
+    checkOpen();
+    flushBuffer();
+    outputStream_.flush();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void close()
+    throws IOException
+  {
+    if (isClosed_)
+      return;
+
+    try {
+      // A high surrogate left at the end is unpaired
+      if (highSurrogate_ != 0) {
+        highSurrogate_ = 0;
+        encode('?');
+      }
+
+      flushBuffer();
+    }
+    finally {
+      isClosed_ = true;
+      outputStream_.close();
+    }
+  }
+}
@@ -0,0 +1,588 @@
+package no.petroware.logio.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A read-only {@link DataStorage} holding its elements in a compressed
+ * form. Compressed storages are created from complete storages by
+ * {@link #compress}, and are replaced by a regular storage by the
+ * owning {@link DataArray} before being modified.
+ * <p>
+ * There are three encodings:
+ * <ul>
+ *   <li>Constant step: Regular sequences such as index curves,
+ *       kept as a start value and a step.</li>
+ *   <li>Run-length: Numeric values with long runs of the same value
+ *       or of no-values, kept as the start and value of each run.</li>
+ *   <li>Dictionary: Integer and string values of low cardinality,
+ *       kept as the distinct values and one 8 or 16 bit code per element.</li>
+ * </ul>
+ * The encodings are lossless, and random access is O(1), or O(log n)
+ * in the number of runs for run-length encoding.
+ *
+ * @author <a href="mailto:info@petroware.no">Petroware AS</a>
+ */
+abstract class CompressedStorage extends DataStorage
+{
+  /** Minimum number of elements for a storage to be compressed. */
+  private static final int MIN_SIZE = 64;
+
+  /** Powers of 10 for the decimals of constant step sequences. */
+  private static final double[] POWERS_OF_TEN = {1.0, 10.0, 100.0, 1000.0, 1.0e4, 1.0e5, 1.0e6, 1.0e7, 1.0e8, 1.0e9};
+
+  /** Largest magnitude of a long that converts exactly to a double. */
+  private static final double MAX_EXACT = 9007199254740992.0; // 2^53
+
+  /** Maximum number of distinct values of a dictionary encoding. */
+  private static final int MAX_DICTIONARY_SIZE = 1 << 16;
+
+  /** Estimated number of bytes per dictionary entry. */
+  private static final int ENTRY_SIZE = 48;
+
+  /** Number of elements of this storage. [0,&gt;. */
+  final int size_;
+
+  /**
+   * Create a compressed storage.
+   *
+   * @param valueType  Type of the elements of the storage. Non-null.
+   * @param size       Number of elements of the storage. [0,&gt;.
+   */
+  CompressedStorage(Class<?> valueType, int size)
+  {
+    super(valueType);
+
+    assert size >= 0 : "Invalid size: " + size;
+    size_ = size;
+  }
+
+  /**
+   * Return the specified storage in a compressed form, if possible
+   * and if this saves at least half the memory of the storage.
+   *
+   * @param storage  Storage to compress. Non-null.
+   * @return         The compressed storage, or the storage itself
+   *                 if it is not compressed. Never null.
+   */
+  static DataStorage compress(DataStorage storage)
+  {
+    assert storage != null : "storage cannot be null";
+
+    int size = storage.size();
+    if (size < MIN_SIZE)
+      return storage;
+
+    Class<?> valueType = storage.valueType_;
+
+    // Strings are dictionary encoded by their storage already
+    if (valueType != Double.class && valueType != Float.class && valueType != Integer.class)
+      return storage;
+
+    if (valueType == Double.class || valueType == Integer.class) {
+      DataStorage compressedStorage = ConstantStepStorage.create(storage);
+      if (compressedStorage != null)
+        return compressedStorage;
+    }
+
+    long maxSize = (long) size * (valueType == Double.class ? 8 : 4) / 2;
+
+    DataStorage runLengthStorage = RunLengthStorage.create(storage, maxSize);
+    if (runLengthStorage != null)
+      return runLengthStorage;
+
+    if (valueType == Integer.class) {
+      DataStorage compressedStorage = DictionaryStorage.create(storage, maxSize);
+      if (compressedStorage != null)
+        return compressedStorage;
+    }
+
+    return storage;
+  }
+
+  /**
+   * Populate the specified regular storage with the elements of this storage.
+   *
+   * @param storage  Empty regular storage of the same value type as
+   *                 this storage. Non-null.
+   * @return         The specified storage. Never null.
+   */
+  DataStorage expand(DataStorage storage)
+  {
+    assert storage != null : "storage cannot be null";
+    assert storage.size() == 0 : "storage must be empty";
+
+    storage.ensureCapacity(size_);
+    storage.addValues(this);
+    return storage;
+  }
+
+  /**
+   * Check that the specified index is within this storage.
+   *
+   * @param index  Index to check.
+   * @throws IndexOutOfBoundsException  If index is out of bounds.
+   */
+  final void checkIndex(int index)
+  {
+    if (index < 0 || index >= size_)
+      throw new IndexOutOfBoundsException("Index: " + index + " Size: " + size_);
+  }
+
+  /**
+   * Convert the specified double to the value type of this storage.
+   * Only used for the numeric types, where the conversion is exact.
+   *
+   * @param value  Value to convert. Double.NaN indicates no-value.
+   * @return       The value of the value type of this storage. Null if no-value.
+   */
+  final Object toValue(double value)
+  {
+    if (Double.isNaN(value))
+      return null;
+
+    if (valueType_ == Float.class)
+      return (float) value;
+
+    if (valueType_ == Integer.class)
+      return (int) value;
+
+    return value;
+  }
+
+  @Override
+  final void add(Object value)
+  {
+    throw new UnsupportedOperationException("Compressed storage is read-only");
+  }
+
+  @Override
+  final void addDouble(double value)
+  {
+    throw new UnsupportedOperationException("Compressed storage is read-only");
+  }
+
+  @Override
+  final void addAll(DataStorage storage)
+  {
+    throw new UnsupportedOperationException("Compressed storage is read-only");
+  }
+
+  @Override
+  final void set(int index, Object value)
+  {
+    throw new UnsupportedOperationException("Compressed storage is read-only");
+  }
+
+  @Override
+  final void clear()
+  {
+    throw new UnsupportedOperationException("Compressed storage is read-only");
+  }
+
+  @Override
+  final int size()
+  {
+    return size_;
+  }
+
+  @Override
+  final void trim()
+  {
+    // Nothing as compressed storages are created trimmed
+  }
+
+  @Override
+  final DataStorage compress()
+  {
+    return this;
+  }
+
+  /**
+   * Storage of a regular sequence of numbers, i.e.&nbsp;where element i
+   * is (first + i * step) / 10<sup>nDecimals</sup> exactly.
+   */
+  static final class ConstantStepStorage extends CompressedStorage
+  {
+    /** The first element, scaled. */
+    private final long first_;
+
+    /** Step between elements, scaled. */
+    private final long step_;
+
+    /** Scale of the elements, i.e.&nbsp;10<sup>nDecimals</sup>. */
+    private final double scale_;
+
+    private ConstantStepStorage(Class<?> valueType, int size, long first, long step, double scale)
+    {
+      super(valueType, size);
+
+      first_ = first;
+      step_ = step;
+      scale_ = scale;
+    }
+
+    /**
+     * Create a constant step storage from the specified storage.
+     *
+     * @param storage  Storage to compress. Non-null. Of type Double or Integer.
+     * @return         The compressed storage. Null if the elements are
+     *                 not a regular sequence.
+     */
+    static ConstantStepStorage create(DataStorage storage)
+    {
+      int size = storage.size();
+
+      double v0 = storage.getDouble(0);
+      double v1 = storage.getDouble(1);
+      double vn = storage.getDouble(size - 1);
+
+      if (Double.isNaN(v0) || Double.isNaN(v1) || Double.isNaN(vn))
+        return null;
+
+      // Find the smallest number of decimals that represents the first values exactly
+      for (double scale : POWERS_OF_TEN) {
+        double first = Math.rint(v0 * scale);
+        double second = Math.rint(v1 * scale);
+        double last = Math.rint(vn * scale);
+
+        if (Math.abs(first) >= MAX_EXACT || Math.abs(second) >= MAX_EXACT || Math.abs(last) >= MAX_EXACT)
+          return null;
+
+        if (Double.compare(first / scale, v0) != 0 || Double.compare(second / scale, v1) != 0)
+          continue;
+
+        long firstValue = (long) first;
+        long step = (long) second - firstValue;
+
+        for (int index = 0; index < size; index++) {
+          double v = (firstValue + index * step) / scale;
+          if (Double.compare(v, storage.getDouble(index)) != 0)
+            return null;
+        }
+
+        return new ConstantStepStorage(storage.valueType_, size, firstValue, step, scale);
+      }
+
+      return null;
+    }
+
+    @Override
+    Object get(int index)
+    {
+      return toValue(getDouble(index));
+    }
+
+    @Override
+    boolean isNull(int index)
+    {
+      checkIndex(index);
+      return false;
+    }
+
+    @Override
+    double getDouble(int index)
+    {
+      checkIndex(index);
+      return (first_ + index * step_) / scale_;
+    }
+  }
+
+  /**
+   * Storage of numbers as runs of equal values.
+   */
+  static final class RunLengthStorage extends CompressedStorage
+  {
+    /** Index of the first element of each run. Ascending, starting at 0. */
+    private final int[] runStarts_;
+
+    /** Value of each run. Double.NaN for runs of no-values. */
+    private final double[] runValues_;
+
+    /** The most recently accessed run, to speed up sequential access. */
+    private int lastRunNo_ = 0;
+
+    private RunLengthStorage(Class<?> valueType, int size, int[] runStarts, double[] runValues)
+    {
+      super(valueType, size);
+
+      runStarts_ = runStarts;
+      runValues_ = runValues;
+    }
+
+    /**
+     * Create a run-length storage from the specified storage.
+     *
+     * @param storage  Storage to compress. Non-null. Of a numeric type.
+     * @param maxSize  Maximum number of bytes of the compressed storage.
+     * @return         The compressed storage. Null if the runs are
+     *                 too short to save memory.
+     */
+    static RunLengthStorage create(DataStorage storage, long maxSize)
+    {
+      int size = storage.size();
+      int maxNRuns = (int) Math.min(maxSize / 12, size);
+
+      // Count the runs first to allocate the runs exactly
+      int nRuns = 1;
+      long bits = Double.doubleToLongBits(storage.getDouble(0));
+      for (int index = 1; index < size; index++) {
+        long b = Double.doubleToLongBits(storage.getDouble(index));
+        if (b != bits) {
+          nRuns++;
+          if (nRuns > maxNRuns)
+            return null;
+          bits = b;
+        }
+      }
+
+      int[] runStarts = new int[nRuns];
+      double[] runValues = new double[nRuns];
+
+      int runNo = 0;
+      runValues[0] = storage.getDouble(0);
+      for (int index = 1; index < size; index++) {
+        double v = storage.getDouble(index);
+        if (Double.doubleToLongBits(v) != Double.doubleToLongBits(runValues[runNo])) {
+          runNo++;
+          runStarts[runNo] = index;
+          runValues[runNo] = v;
+        }
+      }
+
+      return new RunLengthStorage(storage.valueType_, size, runStarts, runValues);
+    }
+
+    /**
+     * Return the run of the element at the specified index.
+     *
+     * @param index  Index of element. [0,size&gt;.
+     * @return       The run of the element. [0,nRuns&gt;.
+     */
+    private int findRun(int index)
+    {
+      checkIndex(index);
+
+      int runNo = lastRunNo_;
+      if (runNo >= runStarts_.length || runStarts_[runNo] > index || (runNo + 1 < runStarts_.length && runStarts_[runNo + 1] <= index)) {
+        runNo = Arrays.binarySearch(runStarts_, index);
+        if (runNo < 0)
+          runNo = -runNo - 2;
+        lastRunNo_ = runNo;
+      }
+
+      return runNo;
+    }
+
+    @Override
+    Object get(int index)
+    {
+      return toValue(getDouble(index));
+    }
+
+    @Override
+    boolean isNull(int index)
+    {
+      return Double.isNaN(getDouble(index));
+    }
+
+    @Override
+    double getDouble(int index)
+    {
+      return runValues_[findRun(index)];
+    }
+  }
+
+  /**
+   * Storage of values as codes into a dictionary of the distinct values.
+   * The codes of the values are assigned in the order the values first
+   * appear, and no-values have a code of their own after these.
+   */
+  static final class DictionaryStorage extends CompressedStorage
+  {
+    /** The distinct values by code, followed by null if there are no-values. */
+    private final Object[] dictionary_;
+
+    /**
+     * The entries of the dictionary as doubles if these are numbers,
+     * otherwise null. Strings in particular are converted only on request.
+     */
+    private final double[] dictionaryValues_;
+
+    /** Number of distinct values, i.e.&nbsp;not including no-value. */
+    private final int nCodes_;
+
+    /** Code of each element if the dictionary has at most 256 entries, otherwise null. */
+    private final byte[] byteCodes_;
+
+    /** Code of each element if the dictionary has more than 256 entries, otherwise null. */
+    private final char[] charCodes_;
+
+    private DictionaryStorage(Class<?> valueType, Object[] dictionary, int nCodes, byte[] byteCodes, char[] charCodes)
+    {
+      super(valueType, byteCodes != null ? byteCodes.length : charCodes.length);
+
+      dictionary_ = dictionary;
+      nCodes_ = nCodes;
+      byteCodes_ = byteCodes;
+      charCodes_ = charCodes;
+
+      if (Number.class.isAssignableFrom(valueType)) {
+        dictionaryValues_ = new double[dictionary.length];
+        for (int i = 0; i < dictionary.length; i++)
+          dictionaryValues_[i] = Util.getAsDouble(dictionary[i]);
+      }
+      else {
+        dictionaryValues_ = null;
+      }
+    }
+
+    /**
+     * Create a dictionary storage from the specified codes.
+     *
+     * @param valueType  Type of the elements of the storage. Non-null.
+     * @param values     The distinct values by code. Non-null.
+     * @param codes      Code of each element, -1 for no-value. Non-null.
+     * @param size       Number of elements. [0,&gt;.
+     * @param maxSize    Maximum number of bytes of the compressed storage.
+     * @return           The compressed storage. Null if too large.
+     */
+    private static DictionaryStorage create(Class<?> valueType, Object[] values, int[] codes, int size, long maxSize)
+    {
+      // No-values are given the code after the distinct values
+      Object[] dictionary = Arrays.copyOf(values, values.length + 1);
+      int nullCode = values.length;
+
+      boolean isByteCoded = dictionary.length <= 256;
+
+      long compressedSize = (long) size * (isByteCoded ? 1 : 2) + (long) dictionary.length * ENTRY_SIZE;
+      if (dictionary.length > MAX_DICTIONARY_SIZE || compressedSize > maxSize)
+        return null;
+
+      byte[] byteCodes = isByteCoded ? new byte[size] : null;
+      char[] charCodes = isByteCoded ? null : new char[size];
+
+      for (int index = 0; index < size; index++) {
+        int code = codes[index] >= 0 ? codes[index] : nullCode;
+        if (isByteCoded)
+          byteCodes[index] = (byte) code;
+        else
+          charCodes[index] = (char) code;
+      }
+
+      return new DictionaryStorage(valueType, dictionary, values.length, byteCodes, charCodes);
+    }
+
+    /**
+     * Create a dictionary storage from the specified storage.
+     *
+     * @param storage  Storage to compress. Non-null.
+     * @param maxSize  Maximum number of bytes of the compressed storage.
+     * @return         The compressed storage. Null if there are too many
+     *                 distinct values to save memory.
+     */
+    static DictionaryStorage create(DataStorage storage, long maxSize)
+    {
+      int size = storage.size();
+
+      Map<Object,Integer> valueCodes = new HashMap<>();
+      List<Object> values = new ArrayList<>();
+      int[] codes = new int[size];
+
+      for (int index = 0; index < size; index++) {
+        Object value = storage.get(index);
+        if (value == null) {
+          codes[index] = -1;
+          continue;
+        }
+
+        Integer code = valueCodes.get(value);
+        if (code == null) {
+          if (values.size() == MAX_DICTIONARY_SIZE - 1)
+            return null;
+          code = values.size();
+          values.add(value);
+          valueCodes.put(value, code);
+        }
+        codes[index] = code;
+      }
+
+      return create(storage.valueType_, values.toArray(), codes, size, maxSize);
+    }
+
+    /**
+     * Create a dictionary storage from the specified string storage,
+     * keeping its codes.
+     *
+     * @param storage  Storage to compress. Non-null.
+     * @return         The compressed storage, or the storage itself if it
+     *                 has too many distinct values. Never null.
+     */
+    static DataStorage create(DataStorage.StringStorage storage)
+    {
+      int size = storage.size();
+
+      int[] codes = new int[size];
+      for (int index = 0; index < size; index++)
+        codes[index] = storage.getCode(index);
+
+      DictionaryStorage dictionaryStorage = create(String.class, storage.getSymbols(), codes, size, Long.MAX_VALUE);
+      return dictionaryStorage != null ? dictionaryStorage : storage;
+    }
+
+    /**
+     * Return the position in the dictionary of the element at the specified index.
+     *
+     * @param index  Index of element. [0,size&gt;.
+     * @return       Position of the element in the dictionary. [0,dictionarySize&gt;.
+     */
+    private int getPosition(int index)
+    {
+      checkIndex(index);
+      return byteCodes_ != null ? byteCodes_[index] & 0xff : charCodes_[index];
+    }
+
+    @Override
+    Object get(int index)
+    {
+      return dictionary_[getPosition(index)];
+    }
+
+    @Override
+    boolean isNull(int index)
+    {
+      return dictionary_[getPosition(index)] == null;
+    }
+
+    @Override
+    double getDouble(int index)
+    {
+      return dictionaryValues_ != null ? dictionaryValues_[getPosition(index)] : Util.getAsDouble(get(index));
+    }
+
+    @Override
+    int getCode(int index)
+    {
+      int code = getPosition(index);
+      return code < nCodes_ ? code : -1;
+    }
+
+    @Override
+    Object getCodeValue(int code)
+    {
+      if (code < 0 || code >= nCodes_)
+        throw new IndexOutOfBoundsException("Code: " + code + " Size: " + nCodes_);
+
+      return dictionary_[code];
+    }
+
+    @Override
+    int getNCodes()
+    {
+      return nCodes_;
+    }
+  }
+}
@@ -1,9 +1,5 @@
 package no.petroware.logio.util;
 
-import java.util.ArrayList;
-import java.util.Date;
-import java.util.List;
-
 /**
  * Class for holding a list of values of a specific type.
  * <p>
@@ -14,68 +10,209 @@ import java.util.List;
  * In theory it should be possible to make a <em>generic</em> version of this class,
  * but this proves impossible to work with on the client side as the generic type is
  * not known, other than through the valueType variable.
+ * <p>
+ * The elements are kept in a storage specific to the value type, so that
+ * each operation dispatches directly to a primitive backed list.
+ * Numeric elements may optionally be kept outside of the Java heap,
+ * see {@link MemoryMode}.
  *
  * @author <a href="mailto:info@petroware.no">Petroware AS</a>
  */
 public final class DataArray
 {
-  /** Data array in case type of array is double. Null if not. */
-  private final DoubleList doubleValues_;
+  /**
+   * Back-end storage specific to the type of the elements. Replaced
+   * when the data array is compressed, and when it is modified after
+   * being compressed. Non-null.
+   */
+  private DataStorage storage_;
 
-  /** Data array in case type of array is float. Null if not. */
-  private final FloatList floatValues_;
+  /** Where the elements of this data array are kept. Non-null. */
+  private final MemoryMode memoryMode_;
 
-  /** Data array in case type of array is integer. Null if not. */
-  private final IntList intValues_;
+  /** File to map the elements from in file mapped mode. Null if private to the storage. */
+  private final MappedFile mappedFile_;
 
-  /** Data array in case type of array is long. Null if not. */
-  private final ArrayList<Long> longValues_;
+  /**
+   * Relative tolerance of double elements kept as 32-bit floats.
+   * Double.NaN if the elements are kept in their own precision.
+   */
+  private double singlePrecisionTolerance_ = Double.NaN;
 
-  /** Data array in case type of array is boolean. Null if not. */
-  private final ArrayList<Boolean> boolValues_;
+  /**
+   * Create a data array of the specific type with elements
+   * kept on the Java heap.
+   *
+   * @param type  Type of the elements of the data array. Non-null.
+   * @throws IllegalArgumentException  If type is null.
+   */
+  public DataArray(Class<?> type)
+  {
+    this(type, MemoryMode.HEAP);
+  }
 
-  /** Data array in case type of array is string. Null if not. */
-  private final ArrayList<String> stringValues_;
+  /**
+   * Create a data array of the specific type.
+   *
+   * @param type        Type of the elements of the data array. Non-null.
+   * @param memoryMode  Where to keep the elements. Non-null.
+   * @throws IllegalArgumentException  If type or memoryMode is null.
+   */
+  public DataArray(Class<?> type, MemoryMode memoryMode)
+  {
+    this(type, memoryMode, null);
+  }
 
-  /** Data array in case type of array is Date. Null if not. */
-  private final ArrayList<Date> timeValues_;
+  /**
+   * Create a data array of the specific type, sharing the specified
+   * file with other data arrays in {@link MemoryMode#FILE_MAPPED} mode.
+   *
+   * @param type        Type of the elements of the data array. Non-null.
+   * @param memoryMode  Where to keep the elements. Non-null.
+   * @param mappedFile  File to map the elements from in file mapped mode.
+   *                    Null to use a temporary file private to the data array.
+   * @throws IllegalArgumentException  If type or memoryMode is null.
+   */
+  public DataArray(Class<?> type, MemoryMode memoryMode, MappedFile mappedFile)
+  {
+    if (type == null)
+      throw new IllegalArgumentException("type cannot be null");
 
-  /** Data array in case type of array is Short. Null if not. */
-  private final ArrayList<Short> shortValues_;
+    if (memoryMode == null)
+      throw new IllegalArgumentException("memoryMode cannot be null");
 
-  /** Data array in case type of array is (signed) Byte. Null if not. */
-  private final ArrayList<Byte> byteValues_;
+    storage_ = DataStorage.create(type, memoryMode, mappedFile);
+    memoryMode_ = memoryMode;
+    mappedFile_ = mappedFile;
+  }
 
   /**
-   * Data array in case type is none of the above.
-   * Never null, but not used unless all of the above is null.
+   * Create a data array on the specified storage, kept on the Java heap.
+   *
+   * @param storage  Back-end storage of the data array. Non-null.
    */
-  private final ArrayList<Object> objectValues_;
+  DataArray(DataStorage storage)
+  {
+    assert storage != null : "storage cannot be null";
+
+    storage_ = storage;
+    memoryMode_ = MemoryMode.HEAP;
+    mappedFile_ = null;
+  }
 
   /**
-   * Create a data array of the specific type.
+   * Create a new empty storage for the elements of this data array.
    *
-   * @param type  Type of the elements of the data array. Non-null.
-   * @throws IllegalArgumentException  If type is null.
+   * @return  A new storage for the elements of this data array. Never null.
    */
-  public DataArray(Class<?> type)
+  private DataStorage newStorage()
   {
-    if (type == null)
-      throw new IllegalArgumentException("yype cannot be null");
-
-    //
-    // Create the correct back-end list
-    //
-    floatValues_ = type == Float.class ? new FloatList() : null;
-    intValues_ = type == Integer.class ? new IntList() : null;
-    longValues_ = type == Long.class ? new ArrayList<Long>() : null;
-    doubleValues_ = type == Double.class ? new DoubleList() : null;
-    timeValues_ = type == Date.class ? new ArrayList<Date>() : null;
-    shortValues_ = type == Short.class ? new ArrayList<Short>() : null;
-    byteValues_ = type == Byte.class ? new ArrayList<Byte>() : null;
-    stringValues_ = type == String.class ? new ArrayList<String>() : null;
-    boolValues_ = type == Boolean.class ? new ArrayList<Boolean>() : null;
-    objectValues_ = new ArrayList<Object>();
+    if (!Double.isNaN(singlePrecisionTolerance_))
+      return new DataStorage.SinglePrecisionStorage(singlePrecisionTolerance_);
+
+    return DataStorage.create(storage_.valueType_, memoryMode_, mappedFile_);
+  }
+
+  /**
+   * Return the storage of this data array for modification,
+   * expanding it first if it is compressed.
+   *
+   * @return  The storage of this data array. Never null.
+   */
+  private DataStorage getMutableStorage()
+  {
+    if (storage_ instanceof CompressedStorage)
+      storage_ = ((CompressedStorage) storage_).expand(newStorage());
+
+    return storage_;
+  }
+
+  /**
+   * Encode the elements of this data array in a compressed form if
+   * this saves a substantial amount of memory. Typically done when
+   * the data array is completely populated.
+   * <p>
+   * Regular sequences are kept as a start value and a step, numbers
+   * with long runs of equal values as runs, and integers and strings
+   * with few distinct values as codes into a dictionary. Access to
+   * the elements is unchanged, but slightly slower. If the data array
+   * is modified later on, it is first expanded back to its regular form.
+   * Data arrays kept off-heap and columns of a {@link DoubleMatrix}
+   * are not compressed.
+   */
+  public void compress()
+  {
+    storage_ = storage_.compress();
+  }
+
+  /**
+   * Check if the elements of this data array are in a compressed form.
+   *
+   * @return  True if the data array is compressed, false otherwise.
+   */
+  public boolean isCompressed()
+  {
+    return storage_ instanceof CompressedStorage;
+  }
+
+  /**
+   * Keep the elements of this data array as 32-bit floats as long as
+   * each element is within the specified relative tolerance of its float
+   * representation, i.e.&nbsp;|(float) v - v| is at most tolerance * |v|.
+   * This halves the memory use of the array. When an element outside the
+   * tolerance is added, all the elements are converted back to doubles.
+   * Elements are returned as doubles in either case.
+   * <p>
+   * Applies to double data arrays kept on the Java heap only. Other data
+   * arrays and columns of a {@link DoubleMatrix} are left unchanged.
+   *
+   * @param tolerance  Largest relative difference between an element and
+   *                   its float representation. [0,&gt;.
+   * @throws IllegalArgumentException  If tolerance is negative or Double.NaN.
+   */
+  public void setSinglePrecision(double tolerance)
+  {
+    if (Double.isNaN(tolerance) || tolerance < 0.0)
+      throw new IllegalArgumentException("Invalid tolerance: " + tolerance);
+
+    if (storage_.valueType_ != Double.class || memoryMode_ != MemoryMode.HEAP ||
+        storage_ instanceof DataStorage.MatrixColumnStorage)
+      return;
+
+    boolean isCompressed = isCompressed();
+
+    singlePrecisionTolerance_ = tolerance;
+
+    DataStorage storage = newStorage();
+    storage.ensureCapacity(storage_.size());
+    storage.addValues(storage_);
+    storage_ = storage;
+
+    if (isCompressed)
+      compress();
+  }
+
+  /**
+   * Check if the elements of this data array are currently kept
+   * as 32-bit floats.
+   *
+   * @return  True if the elements are kept as floats, false otherwise.
+   * @see #setSinglePrecision
+   */
+  public boolean isSinglePrecision()
+  {
+    return storage_ instanceof DataStorage.SinglePrecisionStorage &&
+           ((DataStorage.SinglePrecisionStorage) storage_).isSinglePrecision();
+  }
+
+  /**
+   * Return where the elements of this data array are kept.
+   *
+   * @return  Memory mode of this data array. Never null.
+   */
+  public MemoryMode getMemoryMode()
+  {
+    return memoryMode_;
   }
 
   /**
@@ -86,26 +223,43 @@ public final class DataArray
    */
   public void add(Object value)
   {
-    if (floatValues_ != null)
-      floatValues_.add((Float) value);
-    else if (intValues_ != null)
-      intValues_.add((Integer) value);
-    else if (longValues_ != null)
-      longValues_.add((Long) value);
-    else if (doubleValues_ != null)
-      doubleValues_.add((Double) value);
-    else if (timeValues_ != null)
-      timeValues_.add((Date) value);
-    else if (shortValues_ != null)
-      shortValues_.add((Short) value);
-    else if (byteValues_ != null)
-      byteValues_.add((Byte) value);
-    else if (stringValues_ != null)
-      stringValues_.add((String) value);
-    else if (boolValues_ != null)
-      boolValues_.add((Boolean) value);
+    getMutableStorage().add(value);
+  }
+
+  /**
+   * Add a numeric element to this data array. The value is converted
+   * to the type of the array the same way as {@link Util#getAsType(double,Class)}
+   * but without boxing for the primitive backed types.
+   *
+   * @param value  Value to add. Double.NaN indicates no-value.
+   */
+  public void addDouble(double value)
+  {
+    getMutableStorage().addDouble(value);
+  }
+
+  /**
+   * Add all the elements of the specified data array to the end of
+   * this data array.
+   *
+   * @param dataArray  Data array to add elements of. Non-null.
+   * @throws IllegalArgumentException  If dataArray is null or is of a
+   *                   different type than this data array.
+   */
+  public void addAll(DataArray dataArray)
+  {
+    if (dataArray == null)
+      throw new IllegalArgumentException("dataArray cannot be null");
+
+    if (dataArray.storage_.valueType_ != storage_.valueType_)
+      throw new IllegalArgumentException("Incompatible value type: " + dataArray.storage_.valueType_);
+
+    DataStorage storage = getMutableStorage();
+
+    if (dataArray.storage_.getClass() == storage.getClass())
+      storage.addAll(dataArray.storage_);
     else
-      objectValues_.add(value);
+      storage.addValues(dataArray.storage_);
   }
 
   /**
@@ -118,26 +272,7 @@ public final class DataArray
    */
   public void set(int index, Object value)
   {
-    if (floatValues_ != null)
-      floatValues_.set(index, (Float) value);
-    else if (intValues_ != null)
-      intValues_.set(index, (Integer) value);
-    else if (longValues_ != null)
-      longValues_.set(index, (Long) value);
-    else if (doubleValues_ != null)
-      doubleValues_.set(index, (Double) value);
-    else if (timeValues_ != null)
-      timeValues_.set(index, (Date) value);
-    else if (shortValues_ != null)
-      shortValues_.set(index, (Short) value);
-    else if (byteValues_ != null)
-      byteValues_.set(index, (Byte) value);
-    else if (stringValues_ != null)
-      stringValues_.set(index, (String) value);
-    else if (boolValues_ != null)
-      boolValues_.set(index, (Boolean) value);
-    else
-      objectValues_.set(index, value);
+    getMutableStorage().set(index, value);
   }
 
   /**
@@ -149,26 +284,159 @@ public final class DataArray
    */
   public Object get(int index)
   {
-    if (floatValues_ != null)
-      return floatValues_.get(index);
-    else if (intValues_ != null)
-      return intValues_.get(index);
-    else if (longValues_ != null)
-      return longValues_.get(index);
-    else if (doubleValues_ != null)
-      return doubleValues_.get(index);
-    else if (timeValues_ != null)
-      return timeValues_.get(index);
-    else if (shortValues_ != null)
-      return shortValues_.get(index);
-    else if (byteValues_ != null)
-      return byteValues_.get(index);
-    else if (stringValues_ != null)
-      return stringValues_.get(index);
-    else if (boolValues_ != null)
-      return boolValues_.get(index);
-    else
-      return objectValues_.get(index);
+    return storage_.get(index);
+  }
+
+  /**
+   * Check that this is a data array of strings.
+   *
+   * @throws IllegalStateException  If this is not a data array of strings.
+   */
+  private void checkString()
+  {
+    if (storage_.valueType_ != String.class)
+      throw new IllegalStateException("Data array is not of type String: " + storage_.valueType_);
+  }
+
+  /**
+   * Return the code of the string at the specified index.
+   * <p>
+   * Strings are kept as codes into a table of the distinct strings,
+   * assigned in the order the strings first appear. Equal strings
+   * have equal codes, so codes can be used in place of the strings
+   * for grouping and comparing. The codes are stable as long as the
+   * data array is not modified.
+   *
+   * @param index  Index of string. [0,n&gt;.
+   * @return       The code of the string. [0,nCodes&gt;, or -1 if no-value.
+   * @throws IllegalStateException  If this is not a data array of strings.
+   */
+  public int getCode(int index)
+  {
+    checkString();
+    return storage_.getCode(index);
+  }
+
+  /**
+   * Return the string of the specified code.
+   *
+   * @param code  Code of string. [0,nCodes&gt;.
+   * @return      The string of the code. Never null.
+   * @throws IllegalStateException  If this is not a data array of strings.
+   * @throws IndexOutOfBoundsException  If code is out of bounds.
+   */
+  public String getCodeValue(int code)
+  {
+    checkString();
+    return (String) storage_.getCodeValue(code);
+  }
+
+  /**
+   * Return the number of codes of this data array, i.e.&nbsp;the
+   * number of distinct strings.
+   *
+   * @return  Number of codes of this data array. [0,&gt;.
+   * @throws IllegalStateException  If this is not a data array of strings.
+   */
+  public int getNCodes()
+  {
+    checkString();
+    return storage_.getNCodes();
+  }
+
+  /**
+   * Check if the value at the specified index is a no-value.
+   *
+   * @param index  Index to check. [0,n&gt;.
+   *               No bounds checking for performance reasons.
+   * @return       True if the value is a no-value, false otherwise.
+   */
+  public boolean isNull(int index)
+  {
+    return storage_.isNull(index);
+  }
+
+  /**
+   * Return value at the specified index as a double. The value is converted
+   * the same way as {@link Util#getAsDouble} but without boxing for the
+   * primitive backed types.
+   *
+   * @param index  Index to get value at. [0,n&gt;.
+   *               No bounds checking for performance reasons.
+   * @return  The requested value. Double.NaN if no-value.
+   */
+  public double getDouble(int index)
+  {
+    return storage_.getDouble(index);
+  }
+
+  /**
+   * Return value at the specified index as a float.
+   *
+   * @param index  Index to get value at. [0,n&gt;.
+   *               No bounds checking for performance reasons.
+   * @return  The requested value. Float.NaN if no-value.
+   */
+  public float getFloat(int index)
+  {
+    return storage_.getFloat(index);
+  }
+
+  /**
+   * Return value at the specified index as an int. Floating point
+   * values are rounded to the nearest integer.
+   *
+   * @param index  Index to get value at. [0,n&gt;.
+   *               No bounds checking for performance reasons.
+   * @return  The requested value. Integer.MIN_VALUE if no-value.
+   */
+  public int getInt(int index)
+  {
+    return storage_.getInt(index);
+  }
+
+  /**
+   * Return value at the specified index as a long. Floating point
+   * values are rounded to the nearest integer.
+   *
+   * @param index  Index to get value at. [0,n&gt;.
+   *               No bounds checking for performance reasons.
+   * @return  The requested value. Long.MIN_VALUE if no-value.
+   */
+  public long getLong(int index)
+  {
+    return storage_.getLong(index);
+  }
+
+  /**
+   * Return value at the specified index as a time in milliseconds
+   * since the epoch. Numeric values are converted the same way as
+   * by {@link Util#getAsType(double,Class)}.
+   *
+   * @param index  Index to get value at. [0,n&gt;.
+   *               No bounds checking for performance reasons.
+   * @return  The requested value. Long.MIN_VALUE if no-value.
+   */
+  public long getEpochMillis(int index)
+  {
+    return storage_.getEpochMillis(index);
+  }
+
+  /**
+   * Copy all the values of this data array into the specified array
+   * as doubles, converted as by {@link #getDouble}.
+   *
+   * @param dst     Array to copy into. Non-null.
+   * @param offset  Position in dst of the first value. [0,&gt;.
+   * @throws IllegalArgumentException  If dst is null.
+   * @throws IndexOutOfBoundsException  If dst is too small to hold the values.
+   */
+  public void copyTo(double[] dst, int offset)
+  {
+    if (dst == null)
+      throw new IllegalArgumentException("dst cannot be null");
+
+    storage_.copyTo(dst, offset);
   }
 
   /**
@@ -178,26 +446,7 @@ public final class DataArray
    */
   public int size()
   {
-    if (floatValues_ != null)
-      return floatValues_.size();
-    else if (intValues_ != null)
-      return intValues_.size();
-    else if (longValues_ != null)
-      return longValues_.size();
-    else if (doubleValues_ != null)
-      return doubleValues_.size();
-    else if (timeValues_ != null)
-      return timeValues_.size();
-    else if (shortValues_ != null)
-      return shortValues_.size();
-    else if (byteValues_ != null)
-      return byteValues_.size();
-    else if (stringValues_ != null)
-      return stringValues_.size();
-    else if (boolValues_ != null)
-      return boolValues_.size();
-    else
-      return objectValues_.size();
+    return storage_.size();
   }
 
   /**
@@ -205,26 +454,22 @@ public final class DataArray
    */
   public void clear()
   {
-    if (floatValues_ != null)
-      floatValues_.clear();
-    else if (intValues_ != null)
-      intValues_.clear();
-    else if (longValues_ != null)
-      longValues_.clear();
-    else if (doubleValues_ != null)
-      doubleValues_.clear();
-    else if (timeValues_ != null)
-      timeValues_.clear();
-    else if (shortValues_ != null)
-      shortValues_.clear();
-    else if (byteValues_ != null)
-      byteValues_.clear();
-    else if (stringValues_ != null)
-      stringValues_.clear();
-    else if (boolValues_ != null)
-      boolValues_.clear();
+    if (storage_ instanceof CompressedStorage)
+      storage_ = newStorage();
     else
-      objectValues_.clear();
+      storage_.clear();
+  }
+
+  /**
+   * Make room for the specified number of elements in this data array,
+   * so that it is not grown until this size is exceeded. Typically
+   * done when the final size is known up front.
+   *
+   * @param capacity  Number of elements to make room for. [0,&gt;.
+   */
+  public void ensureCapacity(int capacity)
+  {
+    getMutableStorage().ensureCapacity(capacity);
   }
 
   /**
@@ -234,25 +479,6 @@ public final class DataArray
    */
   public void trim()
   {
-    if (floatValues_ != null)
-      floatValues_.trimToSize();
-    else if (intValues_ != null)
-      intValues_.trimToSize();
-    else if (longValues_ != null)
-      longValues_.trimToSize();
-    else if (doubleValues_ != null)
-      doubleValues_.trimToSize();
-    else if (timeValues_ != null)
-      timeValues_.trimToSize();
-    else if (shortValues_ != null)
-      shortValues_.trimToSize();
-    else if (byteValues_ != null)
-      byteValues_.trimToSize();
-    else if (stringValues_ != null)
-      stringValues_.trimToSize();
-    else if (boolValues_ != null)
-      boolValues_.trimToSize();
-    else
-      objectValues_.trimToSize();
+    storage_.trim();
   }
 }
@@ -0,0 +1,2263 @@
+package no.petroware.logio.util;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The back-end storage of a {@link DataArray}.
+ * <p>
+ * There is one subclass per value type with a primitive backed list,
+ * one for all other value types, segmented and off-heap subclasses
+ * for the double, float and integer types, and a single precision
+ * subclass for doubles. As a data array is bound to its
+ * storage at creation, each operation is a single virtual call to
+ * a type specific implementation rather than a search for the
+ * active list of the data array.
+ * <p>
+ * The subclasses assume that values are of the correct type
+ * (or null), and do no type checking for performance reasons.
+ *
+ * @author <a href="mailto:info@petroware.no">Petroware AS</a>
+ */
+abstract class DataStorage
+{
+  /** Type of the elements of this storage. Non-null. */
+  final Class<?> valueType_;
+
+  /**
+   * Create a storage of the specified type.
+   *
+   * @param valueType  Type of the elements of the storage. Non-null.
+   */
+  DataStorage(Class<?> valueType)
+  {
+    assert valueType != null : "valueType cannot be null";
+    valueType_ = valueType;
+  }
+
+  /**
+   * Create a storage for elements of the specified type.
+   *
+   * @param valueType   Type of the elements of the storage. Non-null.
+   * @param memoryMode  Where to keep the elements. Non-null.
+   * @param mappedFile  File to map the elements from in file mapped mode.
+   *                    Null to use a temporary file private to the storage.
+   * @return            The requested storage. Never null.
+   */
+  static DataStorage create(Class<?> valueType, MemoryMode memoryMode, MappedFile mappedFile)
+  {
+    assert valueType != null : "valueType cannot be null";
+    assert memoryMode != null : "memoryMode cannot be null";
+
+    if (memoryMode == MemoryMode.SEGMENTED) {
+      if (valueType == Double.class)
+        return new SegmentedDoubleStorage();
+      else if (valueType == Float.class)
+        return new SegmentedFloatStorage();
+      else if (valueType == Integer.class)
+        return new SegmentedIntStorage();
+    }
+
+    else if (memoryMode != MemoryMode.HEAP) {
+      boolean isFileMapped = memoryMode == MemoryMode.FILE_MAPPED;
+
+      if (valueType == Double.class)
+        return new OffHeapDoubleStorage(isFileMapped, mappedFile);
+      else if (valueType == Float.class)
+        return new OffHeapFloatStorage(isFileMapped, mappedFile);
+      else if (valueType == Integer.class)
+        return new OffHeapIntStorage(isFileMapped, mappedFile);
+
+      // Other types are kept on the heap
+    }
+
+    if (valueType == Double.class)
+      return new DoubleStorage();
+    else if (valueType == Float.class)
+      return new FloatStorage();
+    else if (valueType == Integer.class)
+      return new IntStorage();
+    else if (valueType == Long.class)
+      return new LongStorage();
+    else if (valueType == Date.class)
+      return new DateStorage();
+    else if (valueType == Short.class)
+      return new ShortStorage();
+    else if (valueType == Byte.class)
+      return new ByteStorage();
+    else if (valueType == Boolean.class)
+      return new BooleanStorage();
+    else if (valueType == String.class)
+      return new StringStorage();
+    else
+      return new ObjectStorage(valueType);
+  }
+
+  /**
+   * Add an element to this storage.
+   *
+   * @param value  Value to add. Of the storage type or null.
+   */
+  abstract void add(Object value);
+
+  /**
+   * Add a numeric element to this storage, converted to the
+   * storage type as by {@link Util#getAsType(double,Class)}.
+   *
+   * @param value  Value to add. Double.NaN indicates no-value.
+   */
+  void addDouble(double value)
+  {
+    add(Util.getAsType(value, valueType_));
+  }
+
+  /**
+   * Add all the elements of the specified storage to the end of this storage.
+   *
+   * @param storage  Storage to add elements of. Non-null. Of the same class
+   *                 as this storage.
+   */
+  abstract void addAll(DataStorage storage);
+
+  /**
+   * Add all the elements of the specified storage to the end of this
+   * storage, one by one. Used if the storages are of different classes.
+   *
+   * @param storage  Storage to add elements of. Non-null. Of the same
+   *                 value type as this storage.
+   */
+  void addValues(DataStorage storage)
+  {
+    assert storage.valueType_ == valueType_ : "Incompatible value type: " + storage.valueType_;
+
+    int size = storage.size();
+
+    // The conversion through double is exact for these types
+    if (valueType_ == Double.class || valueType_ == Float.class || valueType_ == Integer.class) {
+      for (int index = 0; index < size; index++)
+        addDouble(storage.getDouble(index));
+    }
+    else {
+      for (int index = 0; index < size; index++)
+        add(storage.get(index));
+    }
+  }
+
+  /**
+   * Set an element of this storage.
+   *
+   * @param index  Index to set value at. [0,size&gt;.
+   * @param value  Value to set. Of the storage type or null.
+   */
+  abstract void set(int index, Object value);
+
+  /**
+   * Return the element at the specified index.
+   *
+   * @param index  Index to get value at. [0,size&gt;.
+   * @return       The requested value. Null if no-value.
+   */
+  abstract Object get(int index);
+
+  /**
+   * Check if the element at the specified index is a no-value.
+   *
+   * @param index  Index to check. [0,size&gt;.
+   * @return       True if the element is a no-value, false otherwise.
+   */
+  boolean isNull(int index)
+  {
+    return get(index) == null;
+  }
+
+  /**
+   * Return the element at the specified index as a double,
+   * converted as by {@link Util#getAsDouble}.
+   *
+   * @param index  Index to get value at. [0,size&gt;.
+   * @return       The requested value. Double.NaN if no-value.
+   */
+  double getDouble(int index)
+  {
+    return Util.getAsDouble(get(index));
+  }
+
+  /**
+   * Return the element at the specified index as a float.
+   *
+   * @param index  Index to get value at. [0,size&gt;.
+   * @return       The requested value. Float.NaN if no-value.
+   */
+  float getFloat(int index)
+  {
+    return (float) getDouble(index);
+  }
+
+  /**
+   * Return the element at the specified index as an int.
+   *
+   * @param index  Index to get value at. [0,size&gt;.
+   * @return       The requested value. Integer.MIN_VALUE if no-value.
+   */
+  int getInt(int index)
+  {
+    double v = getDouble(index);
+    return Double.isNaN(v) ? Integer.MIN_VALUE : (int) Math.round(v);
+  }
+
+  /**
+   * Return the element at the specified index as a long.
+   *
+   * @param index  Index to get value at. [0,size&gt;.
+   * @return       The requested value. Long.MIN_VALUE if no-value.
+   */
+  long getLong(int index)
+  {
+    double v = getDouble(index);
+    return Double.isNaN(v) ? Long.MIN_VALUE : Math.round(v);
+  }
+
+  /**
+   * Return the element at the specified index as a time in
+   * milliseconds since the epoch.
+   *
+   * @param index  Index to get value at. [0,size&gt;.
+   * @return       The requested value. Long.MIN_VALUE if no-value.
+   */
+  long getEpochMillis(int index)
+  {
+    double v = getDouble(index);
+    return Double.isNaN(v) ? Long.MIN_VALUE : (long) v;
+  }
+
+  /**
+   * Return the dictionary code of the element at the specified index.
+   * Only supported by dictionary encoded storages.
+   *
+   * @param index  Index of element. [0,size&gt;.
+   * @return       The code of the element. -1 if no-value.
+   * @throws UnsupportedOperationException  If the storage is not dictionary encoded.
+   */
+  int getCode(int index)
+  {
+    throw new UnsupportedOperationException("Storage is not dictionary encoded");
+  }
+
+  /**
+   * Return the value of the specified dictionary code.
+   * Only supported by dictionary encoded storages.
+   *
+   * @param code  Code of value. [0,nCodes&gt;.
+   * @return      The value of the code. Never null.
+   * @throws UnsupportedOperationException  If the storage is not dictionary encoded.
+   */
+  Object getCodeValue(int code)
+  {
+    throw new UnsupportedOperationException("Storage is not dictionary encoded");
+  }
+
+  /**
+   * Return the number of dictionary codes of this storage.
+   * Only supported by dictionary encoded storages.
+   *
+   * @return  Number of codes, i.e.&nbsp;distinct values. [0,&gt;.
+   * @throws UnsupportedOperationException  If the storage is not dictionary encoded.
+   */
+  int getNCodes()
+  {
+    throw new UnsupportedOperationException("Storage is not dictionary encoded");
+  }
+
+  /**
+   * Copy all the elements of this storage into the specified array as doubles.
+   *
+   * @param dst     Array to copy into. Non-null.
+   * @param offset  Position in dst of the first value. [0,&gt;.
+   * @throws IndexOutOfBoundsException  If dst is too small to hold the values.
+   */
+  void copyTo(double[] dst, int offset)
+  {
+    int size = size();
+    if (offset < 0 || offset + size > dst.length)
+      throw new IndexOutOfBoundsException("Offset: " + offset + " Size: " + size);
+
+    for (int index = 0; index < size; index++)
+      dst[offset + index] = getDouble(index);
+  }
+
+  /**
+   * Return number of elements in this storage.
+   *
+   * @return  Number of elements in this storage. [0,&gt;.
+   */
+  abstract int size();
+
+  /**
+   * Clear content of this storage.
+   */
+  abstract void clear();
+
+  /**
+   * Set capacity of this storage to its actual size.
+   */
+  abstract void trim();
+
+  /**
+   * Make room for the specified number of elements in this storage,
+   * so that it is not grown until this size is exceeded. Storages
+   * that grow without copying ignore this.
+   *
+   * @param capacity  Number of elements to make room for. [0,&gt;.
+   */
+  void ensureCapacity(int capacity)
+  {
+    // Nothing by default
+  }
+
+  /**
+   * Return this storage in a compressed form if this saves a
+   * substantial amount of memory.
+   *
+   * @return  The compressed storage, or this storage if it is not
+   *          compressed. Never null.
+   */
+  DataStorage compress()
+  {
+    return CompressedStorage.compress(this);
+  }
+
+  /**
+   * Storage of double values.
+   */
+  static final class DoubleStorage extends DataStorage
+  {
+    private final DoubleList values_ = new DoubleList();
+
+    DoubleStorage()
+    {
+      super(Double.class);
+    }
+
+    @Override
+    void add(Object value)
+    {
+      values_.add((Double) value);
+    }
+
+    @Override
+    void addDouble(double value)
+    {
+      values_.add(value);
+    }
+
+    @Override
+    void addAll(DataStorage storage)
+    {
+      values_.addAll(((DoubleStorage) storage).values_);
+    }
+
+    @Override
+    void set(int index, Object value)
+    {
+      values_.set(index, (Double) value);
+    }
+
+    @Override
+    Object get(int index)
+    {
+      return values_.get(index);
+    }
+
+    @Override
+    boolean isNull(int index)
+    {
+      return Double.isNaN(values_.getDouble(index));
+    }
+
+    @Override
+    double getDouble(int index)
+    {
+      return values_.getDouble(index);
+    }
+
+    @Override
+    void copyTo(double[] dst, int offset)
+    {
+      values_.copyTo(dst, offset);
+    }
+
+    @Override
+    int size()
+    {
+      return values_.size();
+    }
+
+    @Override
+    void clear()
+    {
+      values_.clear();
+    }
+
+    @Override
+    void trim()
+    {
+      values_.trimToSize();
+    }
+
+    @Override
+    void ensureCapacity(int capacity)
+    {
+      values_.ensureCapacity(capacity);
+    }
+  }
+
+  /**
+   * Storage of float values.
+   */
+  static final class FloatStorage extends DataStorage
+  {
+    private final FloatList values_ = new FloatList();
+
+    FloatStorage()
+    {
+      super(Float.class);
+    }
+
+    @Override
+    void add(Object value)
+    {
+      values_.add((Float) value);
+    }
+
+    @Override
+    void addDouble(double value)
+    {
+      values_.add((float) value);
+    }
+
+    @Override
+    void addAll(DataStorage storage)
+    {
+      values_.addAll(((FloatStorage) storage).values_);
+    }
+
+    @Override
+    void set(int index, Object value)
+    {
+      values_.set(index, (Float) value);
+    }
+
+    @Override
+    Object get(int index)
+    {
+      return values_.get(index);
+    }
+
+    @Override
+    boolean isNull(int index)
+    {
+      return Float.isNaN(values_.getFloat(index));
+    }
+
+    @Override
+    double getDouble(int index)
+    {
+      return values_.getFloat(index);
+    }
+
+    @Override
+    float getFloat(int index)
+    {
+      return values_.getFloat(index);
+    }
+
+    @Override
+    void copyTo(double[] dst, int offset)
+    {
+      values_.copyTo(dst, offset);
+    }
+
+    @Override
+    int size()
+    {
+      return values_.size();
+    }
+
+    @Override
+    void clear()
+    {
+      values_.clear();
+    }
+
+    @Override
+    void trim()
+    {
+      values_.trimToSize();
+    }
+
+    @Override
+    void ensureCapacity(int capacity)
+    {
+      values_.ensureCapacity(capacity);
+    }
+  }
+
+  /**
+   * Storage of double values kept as 32-bit floats as long as each value
+   * is within a relative tolerance of its float representation. When a
+   * value is not, all values are promoted to doubles.
+   */
+  static final class SinglePrecisionStorage extends DataStorage
+  {
+    /** Relative tolerance of values kept as floats. [0,&gt;. */
+    private final double tolerance_;
+
+    /** The values while within tolerance. Null when promoted. */
+    private FloatList floats_ = new FloatList();
+
+    /** The values when promoted. Null until then. */
+    private DoubleList doubles_ = null;
+
+    /**
+     * Create a single precision storage.
+     *
+     * @param tolerance  Largest relative difference between a value and
+     *                   its float representation. [0,&gt;.
+     */
+    SinglePrecisionStorage(double tolerance)
+    {
+      super(Double.class);
+
+      assert tolerance >= 0.0 : "Invalid tolerance: " + tolerance;
+
+      tolerance_ = tolerance;
+    }
+
+    /**
+     * Check if the values of this storage are kept as floats.
+     *
+     * @return  True if the values are kept as floats, false if they
+     *          have been promoted to doubles.
+     */
+    boolean isSinglePrecision()
+    {
+      return doubles_ == null;
+    }
+
+    /**
+     * Check if the specified value can be kept as a float.
+     *
+     * @param value  Value to check.
+     * @return       True if the value is within tolerance of its float
+     *               representation, false otherwise.
+     */
+    private boolean isWithinTolerance(double value)
+    {
+      float v = (float) value;
+      return v == value || Double.isNaN(value) || Math.abs(v - value) <= tolerance_ * Math.abs(value);
+    }
+
+    /**
+     * Move all the values of this storage into a double list.
+     */
+    private void promote()
+    {
+      int size = floats_.size();
+      doubles_ = new DoubleList(Math.max(size, 1));
+      for (int i = 0; i < size; i++)
+        doubles_.add((double) floats_.getFloat(i));
+      floats_ = null;
+    }
+
+    @Override
+    void add(Object value)
+    {
+      addDouble(value != null ? (Double) value : Double.NaN);
+    }
+
+    @Override
+    void addDouble(double value)
+    {
+      if (doubles_ == null && !isWithinTolerance(value))
+        promote();
+
+      if (doubles_ != null)
+        doubles_.add(value);
+      else
+        floats_.add((float) value);
+    }
+
+    @Override
+    void addAll(DataStorage storage)
+    {
+      addValues(storage);
+    }
+
+    @Override
+    void set(int index, Object value)
+    {
+      double v = value != null ? (Double) value : Double.NaN;
+
+      if (doubles_ == null && !isWithinTolerance(v))
+        promote();
+
+      if (doubles_ != null)
+        doubles_.set(index, v);
+      else
+        floats_.set(index, (float) v);
+    }
+
+    @Override
+    Object get(int index)
+    {
+      double v = getDouble(index);
+      return Double.isNaN(v) ? null : v;
+    }
+
+    @Override
+    boolean isNull(int index)
+    {
+      return Double.isNaN(getDouble(index));
+    }
+
+    @Override
+    double getDouble(int index)
+    {
+      return doubles_ != null ? doubles_.getDouble(index) : floats_.getFloat(index);
+    }
+
+    @Override
+    void copyTo(double[] dst, int offset)
+    {
+      if (doubles_ != null)
+        doubles_.copyTo(dst, offset);
+      else
+        floats_.copyTo(dst, offset);
+    }
+
+    @Override
+    int size()
+    {
+      return doubles_ != null ? doubles_.size() : floats_.size();
+    }
+
+    @Override
+    void clear()
+    {
+      floats_ = new FloatList();
+      doubles_ = null;
+    }
+
+    @Override
+    void trim()
+    {
+      if (doubles_ != null)
+        doubles_.trimToSize();
+      else
+        floats_.trimToSize();
+    }
+
+    @Override
+    void ensureCapacity(int capacity)
+    {
+      if (doubles_ != null)
+        doubles_.ensureCapacity(capacity);
+      else
+        floats_.ensureCapacity(capacity);
+    }
+  }
+
+  /**
+   * Storage of integer values.
+   */
+  static final class IntStorage extends DataStorage
+  {
+    private final IntList values_ = new IntList();
+
+    IntStorage()
+    {
+      super(Integer.class);
+    }
+
+    @Override
+    void add(Object value)
+    {
+      values_.add((Integer) value);
+    }
+
+    @Override
+    void addDouble(double value)
+    {
+      if (Double.isNaN(value))
+        values_.add((Integer) null);
+      else
+        values_.add((int) Math.round(value));
+    }
+
+    @Override
+    void addAll(DataStorage storage)
+    {
+      values_.addAll(((IntStorage) storage).values_);
+    }
+
+    @Override
+    void set(int index, Object value)
+    {
+      values_.set(index, (Integer) value);
+    }
+
+    @Override
+    Object get(int index)
+    {
+      return values_.get(index);
+    }
+
+    @Override
+    boolean isNull(int index)
+    {
+      return values_.getInt(index) == Integer.MIN_VALUE;
+    }
+
+    @Override
+    double getDouble(int index)
+    {
+      int v = values_.getInt(index);
+      return v != Integer.MIN_VALUE ? v : Double.NaN;
+    }
+
+    @Override
+    int getInt(int index)
+    {
+      return values_.getInt(index);
+    }
+
+    @Override
+    long getLong(int index)
+    {
+      int v = values_.getInt(index);
+      return v != Integer.MIN_VALUE ? v : Long.MIN_VALUE;
+    }
+
+    @Override
+    void copyTo(double[] dst, int offset)
+    {
+      values_.copyTo(dst, offset);
+    }
+
+    @Override
+    int size()
+    {
+      return values_.size();
+    }
+
+    @Override
+    void clear()
+    {
+      values_.clear();
+    }
+
+    @Override
+    void trim()
+    {
+      values_.trimToSize();
+    }
+
+    @Override
+    void ensureCapacity(int capacity)
+    {
+      values_.ensureCapacity(capacity);
+    }
+  }
+
+  /**
+   * Storage of long values.
+   */
+  static final class LongStorage extends DataStorage
+  {
+    private final LongList values_ = new LongList();
+
+    LongStorage()
+    {
+      super(Long.class);
+    }
+
+    @Override
+    void add(Object value)
+    {
+      values_.add((Long) value);
+    }
+
+    @Override
+    void addDouble(double value)
+    {
+      if (Double.isNaN(value))
+        values_.add((Long) null);
+      else
+        values_.add(Math.round(value));
+    }
+
+    @Override
+    void addAll(DataStorage storage)
+    {
+      values_.addAll(((LongStorage) storage).values_);
+    }
+
+    @Override
+    void set(int index, Object value)
+    {
+      values_.set(index, (Long) value);
+    }
+
+    @Override
+    Object get(int index)
+    {
+      return values_.get(index);
+    }
+
+    @Override
+    boolean isNull(int index)
+    {
+      return values_.isNull(index);
+    }
+
+    @Override
+    double getDouble(int index)
+    {
+      return values_.isNull(index) ? Double.NaN : values_.getLong(index);
+    }
+
+    @Override
+    int getInt(int index)
+    {
+      return values_.isNull(index) ? Integer.MIN_VALUE : (int) values_.getLong(index);
+    }
+
+    @Override
+    long getLong(int index)
+    {
+      return values_.isNull(index) ? Long.MIN_VALUE : values_.getLong(index);
+    }
+
+    @Override
+    int size()
+    {
+      return values_.size();
+    }
+
+    @Override
+    void clear()
+    {
+      values_.clear();
+    }
+
+    @Override
+    void trim()
+    {
+      values_.trimToSize();
+    }
+
+    @Override
+    void ensureCapacity(int capacity)
+    {
+      values_.ensureCapacity(capacity);
+    }
+  }
+
+  /**
+   * Storage of date values as milliseconds since the epoch.
+   */
+  static final class DateStorage extends DataStorage
+  {
+    private final DateList values_ = new DateList();
+
+    DateStorage()
+    {
+      super(Date.class);
+    }
+
+    @Override
+    void add(Object value)
+    {
+      values_.add((Date) value);
+    }
+
+    @Override
+    void addDouble(double value)
+    {
+      if (Double.isNaN(value))
+        values_.add((Date) null);
+      else
+        values_.add((long) value);
+    }
+
+    @Override
+    void addAll(DataStorage storage)
+    {
+      values_.addAll(((DateStorage) storage).values_);
+    }
+
+    @Override
+    void set(int index, Object value)
+    {
+      values_.set(index, (Date) value);
+    }
+
+    @Override
+    Object get(int index)
+    {
+      return values_.get(index);
+    }
+
+    @Override
+    boolean isNull(int index)
+    {
+      return values_.isNull(index);
+    }
+
+    @Override
+    double getDouble(int index)
+    {
+      return values_.isNull(index) ? Double.NaN : values_.getTime(index);
+    }
+
+    @Override
+    long getLong(int index)
+    {
+      return values_.isNull(index) ? Long.MIN_VALUE : values_.getTime(index);
+    }
+
+    @Override
+    long getEpochMillis(int index)
+    {
+      return values_.isNull(index) ? Long.MIN_VALUE : values_.getTime(index);
+    }
+
+    @Override
+    int size()
+    {
+      return values_.size();
+    }
+
+    @Override
+    void clear()
+    {
+      values_.clear();
+    }
+
+    @Override
+    void trim()
+    {
+      values_.trimToSize();
+    }
+
+    @Override
+    void ensureCapacity(int capacity)
+    {
+      values_.ensureCapacity(capacity);
+    }
+  }
+
+  /**
+   * Storage of short values.
+   */
+  static final class ShortStorage extends DataStorage
+  {
+    private final ShortList values_ = new ShortList();
+
+    ShortStorage()
+    {
+      super(Short.class);
+    }
+
+    @Override
+    void add(Object value)
+    {
+      values_.add((Short) value);
+    }
+
+    @Override
+    void addDouble(double value)
+    {
+      if (Double.isNaN(value))
+        values_.add((Short) null);
+      else
+        values_.add((short) value);
+    }
+
+    @Override
+    void addAll(DataStorage storage)
+    {
+      values_.addAll(((ShortStorage) storage).values_);
+    }
+
+    @Override
+    void set(int index, Object value)
+    {
+      values_.set(index, (Short) value);
+    }
+
+    @Override
+    Object get(int index)
+    {
+      return values_.get(index);
+    }
+
+    @Override
+    boolean isNull(int index)
+    {
+      return values_.isNull(index);
+    }
+
+    @Override
+    double getDouble(int index)
+    {
+      return values_.isNull(index) ? Double.NaN : values_.getShort(index);
+    }
+
+    @Override
+    int getInt(int index)
+    {
+      return values_.isNull(index) ? Integer.MIN_VALUE : values_.getShort(index);
+    }
+
+    @Override
+    long getLong(int index)
+    {
+      return values_.isNull(index) ? Long.MIN_VALUE : values_.getShort(index);
+    }
+
+    @Override
+    int size()
+    {
+      return values_.size();
+    }
+
+    @Override
+    void clear()
+    {
+      values_.clear();
+    }
+
+    @Override
+    void trim()
+    {
+      values_.trimToSize();
+    }
+
+    @Override
+    void ensureCapacity(int capacity)
+    {
+      values_.ensureCapacity(capacity);
+    }
+  }
+
+  /**
+   * Storage of (signed) byte values.
+   */
+  static final class ByteStorage extends DataStorage
+  {
+    private final ByteList values_ = new ByteList();
+
+    ByteStorage()
+    {
+      super(Byte.class);
+    }
+
+    @Override
+    void add(Object value)
+    {
+      values_.add((Byte) value);
+    }
+
+    @Override
+    void addDouble(double value)
+    {
+      if (Double.isNaN(value))
+        values_.add((Byte) null);
+      else
+        values_.add((byte) value);
+    }
+
+    @Override
+    void addAll(DataStorage storage)
+    {
+      values_.addAll(((ByteStorage) storage).values_);
+    }
+
+    @Override
+    void set(int index, Object value)
+    {
+      values_.set(index, (Byte) value);
+    }
+
+    @Override
+    Object get(int index)
+    {
+      return values_.get(index);
+    }
+
+    @Override
+    boolean isNull(int index)
+    {
+      return values_.isNull(index);
+    }
+
+    @Override
+    double getDouble(int index)
+    {
+      return values_.isNull(index) ? Double.NaN : values_.getByte(index);
+    }
+
+    @Override
+    int getInt(int index)
+    {
+      return values_.isNull(index) ? Integer.MIN_VALUE : values_.getByte(index);
+    }
+
+    @Override
+    long getLong(int index)
+    {
+      return values_.isNull(index) ? Long.MIN_VALUE : values_.getByte(index);
+    }
+
+    @Override
+    int size()
+    {
+      return values_.size();
+    }
+
+    @Override
+    void clear()
+    {
+      values_.clear();
+    }
+
+    @Override
+    void trim()
+    {
+      values_.trimToSize();
+    }
+
+    @Override
+    void ensureCapacity(int capacity)
+    {
+      values_.ensureCapacity(capacity);
+    }
+  }
+
+  /**
+   * Storage of boolean values.
+   */
+  static final class BooleanStorage extends DataStorage
+  {
+    private final BooleanList values_ = new BooleanList();
+
+    BooleanStorage()
+    {
+      super(Boolean.class);
+    }
+
+    @Override
+    void add(Object value)
+    {
+      values_.add((Boolean) value);
+    }
+
+    @Override
+    void addDouble(double value)
+    {
+      if (Double.isNaN(value))
+        values_.add((Boolean) null);
+      else
+        values_.add(value != 0.0);
+    }
+
+    @Override
+    void addAll(DataStorage storage)
+    {
+      values_.addAll(((BooleanStorage) storage).values_);
+    }
+
+    @Override
+    void set(int index, Object value)
+    {
+      values_.set(index, (Boolean) value);
+    }
+
+    @Override
+    Object get(int index)
+    {
+      return values_.get(index);
+    }
+
+    @Override
+    boolean isNull(int index)
+    {
+      return values_.isNull(index);
+    }
+
+    @Override
+    double getDouble(int index)
+    {
+      return values_.isNull(index) ? Double.NaN : values_.getBoolean(index) ? 1.0 : 0.0;
+    }
+
+    @Override
+    int size()
+    {
+      return values_.size();
+    }
+
+    @Override
+    void clear()
+    {
+      values_.clear();
+    }
+
+    @Override
+    void trim()
+    {
+      values_.trimToSize();
+    }
+
+    @Override
+    void ensureCapacity(int capacity)
+    {
+      values_.ensureCapacity(capacity);
+    }
+  }
+
+  /**
+   * Storage of strings as codes into a table of the distinct strings.
+   * Codes are assigned in the order the strings are first added.
+   */
+  static final class StringStorage extends DataStorage
+  {
+    /** Code of each element. -1 for no-value. */
+    private final IntList codes_ = new IntList();
+
+    /** The distinct strings by code. */
+    private final ArrayList<String> symbols_ = new ArrayList<>();
+
+    /** Code of each distinct string. */
+    private final Map<String,Integer> symbolCodes_ = new HashMap<>();
+
+    StringStorage()
+    {
+      super(String.class);
+    }
+
+    /**
+     * Return the code of the specified string, adding it to the
+     * table if it is not there already.
+     *
+     * @param value  String to get code of. May be null.
+     * @return       Code of the string. -1 if value is null.
+     */
+    private int encode(String value)
+    {
+      if (value == null)
+        return -1;
+
+      Integer code = symbolCodes_.get(value);
+      if (code == null) {
+        code = symbols_.size();
+        symbols_.add(value);
+        symbolCodes_.put(value, code);
+      }
+
+      return code;
+    }
+
+    @Override
+    void add(Object value)
+    {
+      codes_.add(encode((String) value));
+    }
+
+    @Override
+    void addAll(DataStorage storage)
+    {
+      StringStorage s = (StringStorage) storage;
+      int size = s.size();
+      for (int index = 0; index < size; index++)
+        codes_.add(encode((String) s.get(index)));
+    }
+
+    @Override
+    void set(int index, Object value)
+    {
+      codes_.set(index, encode((String) value));
+    }
+
+    @Override
+    Object get(int index)
+    {
+      int code = codes_.getInt(index);
+      return code >= 0 ? symbols_.get(code) : null;
+    }
+
+    @Override
+    boolean isNull(int index)
+    {
+      return codes_.getInt(index) < 0;
+    }
+
+    @Override
+    int getCode(int index)
+    {
+      return codes_.getInt(index);
+    }
+
+    @Override
+    Object getCodeValue(int code)
+    {
+      return symbols_.get(code);
+    }
+
+    @Override
+    int getNCodes()
+    {
+      return symbols_.size();
+    }
+
+    /**
+     * Return the distinct strings of this storage by code.
+     *
+     * @return  The distinct strings of this storage. Never null.
+     */
+    String[] getSymbols()
+    {
+      return symbols_.toArray(new String[symbols_.size()]);
+    }
+
+    @Override
+    int size()
+    {
+      return codes_.size();
+    }
+
+    @Override
+    void clear()
+    {
+      codes_.clear();
+      symbols_.clear();
+      symbolCodes_.clear();
+    }
+
+    @Override
+    void trim()
+    {
+      codes_.trimToSize();
+      symbols_.trimToSize();
+    }
+
+    @Override
+    void ensureCapacity(int capacity)
+    {
+      codes_.ensureCapacity(capacity);
+    }
+
+    @Override
+    DataStorage compress()
+    {
+      // Narrower codes and no lookup table once complete
+      return CompressedStorage.DictionaryStorage.create(this);
+    }
+  }
+
+  /**
+   * Storage of values of other types.
+   */
+  static final class ObjectStorage extends DataStorage
+  {
+    private final ArrayList<Object> values_ = new ArrayList<>();
+
+    ObjectStorage(Class<?> valueType)
+    {
+      super(valueType);
+    }
+
+    @Override
+    void add(Object value)
+    {
+      values_.add(value);
+    }
+
+    @Override
+    void addAll(DataStorage storage)
+    {
+      values_.addAll(((ObjectStorage) storage).values_);
+    }
+
+    @Override
+    void set(int index, Object value)
+    {
+      values_.set(index, value);
+    }
+
+    @Override
+    Object get(int index)
+    {
+      return values_.get(index);
+    }
+
+    @Override
+    int size()
+    {
+      return values_.size();
+    }
+
+    @Override
+    void clear()
+    {
+      values_.clear();
+    }
+
+    @Override
+    void trim()
+    {
+      values_.trimToSize();
+    }
+
+    @Override
+    void ensureCapacity(int capacity)
+    {
+      values_.ensureCapacity(capacity);
+    }
+  }
+
+  /**
+   * Storage of double values in fixed size chunks.
+   */
+  static final class SegmentedDoubleStorage extends DataStorage
+  {
+    private final SegmentedDoubleList values_ = new SegmentedDoubleList();
+
+    SegmentedDoubleStorage()
+    {
+      super(Double.class);
+    }
+
+    @Override
+    void add(Object value)
+    {
+      values_.add(value != null ? (Double) value : Double.NaN);
+    }
+
+    @Override
+    void addDouble(double value)
+    {
+      values_.add(value);
+    }
+
+    @Override
+    void addAll(DataStorage storage)
+    {
+      values_.addAll(((SegmentedDoubleStorage) storage).values_);
+    }
+
+    @Override
+    void set(int index, Object value)
+    {
+      values_.set(index, value != null ? (Double) value : Double.NaN);
+    }
+
+    @Override
+    Object get(int index)
+    {
+      double v = values_.getDouble(index);
+      return Double.isNaN(v) ? null : v;
+    }
+
+    @Override
+    boolean isNull(int index)
+    {
+      return values_.isNull(index);
+    }
+
+    @Override
+    double getDouble(int index)
+    {
+      return values_.getDouble(index);
+    }
+
+    @Override
+    void copyTo(double[] dst, int offset)
+    {
+      values_.copyTo(dst, offset);
+    }
+
+    @Override
+    int size()
+    {
+      return values_.size();
+    }
+
+    @Override
+    void clear()
+    {
+      values_.clear();
+    }
+
+    @Override
+    void trim()
+    {
+      values_.trimToSize();
+    }
+  }
+
+  /**
+   * Storage of float values in fixed size chunks.
+   */
+  static final class SegmentedFloatStorage extends DataStorage
+  {
+    private final SegmentedFloatList values_ = new SegmentedFloatList();
+
+    SegmentedFloatStorage()
+    {
+      super(Float.class);
+    }
+
+    @Override
+    void add(Object value)
+    {
+      values_.add(value != null ? (Float) value : Float.NaN);
+    }
+
+    @Override
+    void addDouble(double value)
+    {
+      values_.add((float) value);
+    }
+
+    @Override
+    void addAll(DataStorage storage)
+    {
+      values_.addAll(((SegmentedFloatStorage) storage).values_);
+    }
+
+    @Override
+    void set(int index, Object value)
+    {
+      values_.set(index, value != null ? (Float) value : Float.NaN);
+    }
+
+    @Override
+    Object get(int index)
+    {
+      float v = values_.getFloat(index);
+      return Float.isNaN(v) ? null : v;
+    }
+
+    @Override
+    boolean isNull(int index)
+    {
+      return values_.isNull(index);
+    }
+
+    @Override
+    double getDouble(int index)
+    {
+      return values_.getFloat(index);
+    }
+
+    @Override
+    float getFloat(int index)
+    {
+      return values_.getFloat(index);
+    }
+
+    @Override
+    void copyTo(double[] dst, int offset)
+    {
+      values_.copyTo(dst, offset);
+    }
+
+    @Override
+    int size()
+    {
+      return values_.size();
+    }
+
+    @Override
+    void clear()
+    {
+      values_.clear();
+    }
+
+    @Override
+    void trim()
+    {
+      values_.trimToSize();
+    }
+  }
+
+  /**
+   * Storage of integer values in fixed size chunks.
+   */
+  static final class SegmentedIntStorage extends DataStorage
+  {
+    private final SegmentedIntList values_ = new SegmentedIntList();
+
+    SegmentedIntStorage()
+    {
+      super(Integer.class);
+    }
+
+    @Override
+    void add(Object value)
+    {
+      values_.add(value != null ? (Integer) value : Integer.MIN_VALUE);
+    }
+
+    @Override
+    void addDouble(double value)
+    {
+      values_.add(Double.isNaN(value) ? Integer.MIN_VALUE : (int) Math.round(value));
+    }
+
+    @Override
+    void addAll(DataStorage storage)
+    {
+      values_.addAll(((SegmentedIntStorage) storage).values_);
+    }
+
+    @Override
+    void set(int index, Object value)
+    {
+      values_.set(index, value != null ? (Integer) value : Integer.MIN_VALUE);
+    }
+
+    @Override
+    Object get(int index)
+    {
+      int v = values_.getInt(index);
+      return v != Integer.MIN_VALUE ? v : null;
+    }
+
+    @Override
+    boolean isNull(int index)
+    {
+      return values_.isNull(index);
+    }
+
+    @Override
+    double getDouble(int index)
+    {
+      int v = values_.getInt(index);
+      return v != Integer.MIN_VALUE ? v : Double.NaN;
+    }
+
+    @Override
+    int getInt(int index)
+    {
+      return values_.getInt(index);
+    }
+
+    @Override
+    long getLong(int index)
+    {
+      int v = values_.getInt(index);
+      return v != Integer.MIN_VALUE ? v : Long.MIN_VALUE;
+    }
+
+    @Override
+    void copyTo(double[] dst, int offset)
+    {
+      values_.copyTo(dst, offset);
+    }
+
+    @Override
+    int size()
+    {
+      return values_.size();
+    }
+
+    @Override
+    void clear()
+    {
+      values_.clear();
+    }
+
+    @Override
+    void trim()
+    {
+      values_.trimToSize();
+    }
+  }
+
+  /**
+   * Storage of a column of a {@link DoubleMatrix}.
+   */
+  static final class MatrixColumnStorage extends DataStorage
+  {
+    /** The matrix of the column. Non-null. */
+    private final DoubleMatrix matrix_;
+
+    /** The column of the matrix. [0,nColumns&gt;. */
+    private final int column_;
+
+    MatrixColumnStorage(DoubleMatrix matrix, int column)
+    {
+      super(Double.class);
+
+      assert matrix != null : "matrix cannot be null";
+      assert column >= 0 && column < matrix.getNColumns() : "Invalid column: " + column;
+
+      matrix_ = matrix;
+      column_ = column;
+    }
+
+    @Override
+    void add(Object value)
+    {
+      matrix_.add(column_, value != null ? (Double) value : Double.NaN);
+    }
+
+    @Override
+    void addDouble(double value)
+    {
+      matrix_.add(column_, value);
+    }
+
+    @Override
+    void addAll(DataStorage storage)
+    {
+      MatrixColumnStorage s = (MatrixColumnStorage) storage;
+      int size = s.size();
+      for (int index = 0; index < size; index++)
+        matrix_.add(column_, s.getDouble(index));
+    }
+
+    @Override
+    void set(int index, Object value)
+    {
+      matrix_.set(index, column_, value != null ? (Double) value : Double.NaN);
+    }
+
+    @Override
+    Object get(int index)
+    {
+      double v = matrix_.get(index, column_);
+      return Double.isNaN(v) ? null : v;
+    }
+
+    @Override
+    boolean isNull(int index)
+    {
+      return Double.isNaN(matrix_.get(index, column_));
+    }
+
+    @Override
+    double getDouble(int index)
+    {
+      return matrix_.get(index, column_);
+    }
+
+    @Override
+    void copyTo(double[] dst, int offset)
+    {
+      matrix_.copyTo(column_, dst, offset);
+    }
+
+    @Override
+    int size()
+    {
+      return matrix_.size(column_);
+    }
+
+    @Override
+    void clear()
+    {
+      matrix_.clear(column_);
+    }
+
+    @Override
+    void trim()
+    {
+      matrix_.trimToSize();
+    }
+
+    @Override
+    void ensureCapacity(int capacity)
+    {
+      matrix_.ensureCapacity(capacity);
+    }
+
+    @Override
+    DataStorage compress()
+    {
+      // The column is part of the matrix
+      return this;
+    }
+  }
+
+  /**
+   * Storage of fixed size primitive values outside of the Java heap,
+   * either in direct byte buffers or in memory mapped regions of a
+   * temporary file. The values are kept in blocks of fixed size so
+   * that the storage can grow without copying. Only the first block
+   * grows by copying until it reaches the block size, so that small
+   * storages remain small.
+   */
+  abstract static class OffHeapStorage extends DataStorage
+  {
+    /** Number of elements per block as a power of 2. */
+    static final int BLOCK_SHIFT = 16;
+
+    /** Number of elements per block. */
+    static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+
+    /** Mask for the position of an element within its block. */
+    static final int BLOCK_MASK = BLOCK_SIZE - 1;
+
+    /** Initial capacity of the first block. */
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /** Number of bytes per element. [1,&gt;. */
+    private final int elementSize_;
+
+    /** File to map the blocks from. Null if the blocks are direct buffers. */
+    private final MappedFile mappedFile_;
+
+    /** True if the mapped file is private to this storage, false if shared. */
+    private final boolean isOwningFile_;
+
+    /** The blocks of this storage. The first nBlocks entries are in use. */
+    ByteBuffer[] blocks_ = new ByteBuffer[0];
+
+    /** Number of blocks in use. [0,&gt;. */
+    private int nBlocks_ = 0;
+
+    /** Number of elements in this storage. [0,&gt;. */
+    int size_ = 0;
+
+    /**
+     * Create an off-heap storage.
+     *
+     * @param valueType     Type of the elements of the storage. Non-null.
+     * @param elementSize   Number of bytes per element. [1,&gt;.
+     * @param isFileMapped  True to map blocks from a temporary file,
+     *                      false to use direct byte buffers.
+     * @param mappedFile    File to map the blocks from if file mapped. Null
+     *                      to use a temporary file private to this storage.
+     */
+    OffHeapStorage(Class<?> valueType, int elementSize, boolean isFileMapped, MappedFile mappedFile)
+    {
+      super(valueType);
+
+      assert elementSize > 0 : "Invalid elementSize: " + elementSize;
+
+      elementSize_ = elementSize;
+      isOwningFile_ = isFileMapped && mappedFile == null;
+      mappedFile_ = isOwningFile_ ? new MappedFile() : isFileMapped ? mappedFile : null;
+    }
+
+    /**
+     * Check that the specified index is within this storage.
+     *
+     * @param index  Index to check.
+     * @throws IndexOutOfBoundsException  If index is out of bounds.
+     */
+    final void checkIndex(int index)
+    {
+      if (index < 0 || index >= size_)
+        throw new IndexOutOfBoundsException("Index: " + index + " Size: " + size_);
+    }
+
+    /**
+     * Make room for one more element in this storage.
+     *
+     * @return  The block of the next element. Never null.
+     * @throws UncheckedIOException  If mapping a file block fails.
+     */
+    final ByteBuffer nextBlock()
+    {
+      int blockNo = size_ >>> BLOCK_SHIFT;
+
+      if (blockNo == nBlocks_) {
+        if (nBlocks_ == blocks_.length)
+          blocks_ = Arrays.copyOf(blocks_, Math.max(2 * nBlocks_, 4));
+
+        // A block may be left over from before the storage was cleared
+        if (blocks_[nBlocks_] == null)
+          blocks_[nBlocks_] = newBlock(nBlocks_ == 0 ? INITIAL_CAPACITY : BLOCK_SIZE);
+
+        nBlocks_++;
+      }
+
+      // The last block may be short, in which case it grows as the heap lists
+      ByteBuffer block = blocks_[blockNo];
+      int position = size_ & BLOCK_MASK;
+      int capacity = getCapacity(block);
+      if (position == capacity) {
+        block = resizeBlock(block, Math.min(2 * capacity, BLOCK_SIZE), position);
+        blocks_[blockNo] = block;
+      }
+
+      return block;
+    }
+
+    /**
+     * Return the number of elements the specified block can hold.
+     *
+     * @param block  Block to consider. Non-null.
+     * @return       Capacity of the block. [0,BLOCK_SIZE].
+     */
+    private int getCapacity(ByteBuffer block)
+    {
+      return block.capacity() / elementSize_;
+    }
+
+    /**
+     * Create a new block.
+     *
+     * @param capacity  Number of elements of the block. [1,BLOCK_SIZE].
+     * @return          The new block. Never null.
+     * @throws UncheckedIOException  If mapping a file block fails.
+     */
+    private ByteBuffer newBlock(int capacity)
+    {
+      int nBytes = capacity * elementSize_;
+
+      if (mappedFile_ == null)
+        return ByteBuffer.allocateDirect(nBytes).order(ByteOrder.nativeOrder());
+
+      try {
+        return mappedFile_.map(nBytes);
+      }
+      catch (IOException exception) {
+        throw new UncheckedIOException(exception);
+      }
+    }
+
+    /**
+     * Return a copy of the specified block with a new capacity.
+     *
+     * @param block      Block to copy. Non-null.
+     * @param capacity   Number of elements of the new block. [1,BLOCK_SIZE].
+     * @param nElements  Number of elements to copy. [0,capacity].
+     * @return           The new block. Never null.
+     * @throws UncheckedIOException  If mapping a file block fails.
+     */
+    private ByteBuffer resizeBlock(ByteBuffer block, int capacity, int nElements)
+    {
+      assert nElements <= capacity : "Invalid nElements: " + nElements;
+
+      ByteBuffer newBlock = newBlock(capacity);
+
+      ByteBuffer source = block.duplicate();
+      source.position(0).limit(nElements * elementSize_);
+      newBlock.duplicate().put(source);
+
+      return newBlock;
+    }
+
+    /**
+     * Return the byte position of the element at the specified index
+     * within its block.
+     *
+     * @param index  Index of element. [0,&gt;.
+     * @return       The byte position of the element within its block.
+     */
+    final int getPosition(int index)
+    {
+      return (index & BLOCK_MASK) * elementSize_;
+    }
+
+    @Override
+    int size()
+    {
+      return size_;
+    }
+
+    @Override
+    void clear()
+    {
+      // Keep the blocks for reuse
+      size_ = 0;
+      nBlocks_ = 0;
+    }
+
+    @Override
+    void ensureCapacity(int capacity)
+    {
+      // Only the first block is sized, as the others are full size anyway
+      if (size_ > 0 || capacity <= 0)
+        return;
+
+      capacity = Math.min(capacity, BLOCK_SIZE);
+
+      if (blocks_.length == 0)
+        blocks_ = new ByteBuffer[4];
+
+      if (blocks_[0] == null || getCapacity(blocks_[0]) < capacity)
+        blocks_[0] = newBlock(capacity);
+
+      nBlocks_ = 1;
+    }
+
+    @Override
+    void trim()
+    {
+      int nBlocks = (size_ + BLOCK_SIZE - 1) >>> BLOCK_SHIFT;
+
+      for (int blockNo = nBlocks; blockNo < blocks_.length; blockNo++)
+        blocks_[blockNo] = null;
+
+      nBlocks_ = nBlocks;
+      blocks_ = Arrays.copyOf(blocks_, nBlocks);
+
+      //
+      // Shrink the last block to the elements it holds. Mapped blocks
+      // are left as is, as the untouched part of a mapped region takes
+      // neither memory nor disk space, while a copy would.
+      //
+      if (nBlocks > 0 && mappedFile_ == null) {
+        int lastBlockNo = nBlocks - 1;
+        int nElements = size_ - (lastBlockNo << BLOCK_SHIFT);
+        if (nElements < getCapacity(blocks_[lastBlockNo]))
+          blocks_[lastBlockNo] = resizeBlock(blocks_[lastBlockNo], nElements, nElements);
+      }
+
+      // A private file is closed, and further blocks are mapped from a new file
+      if (isOwningFile_)
+        mappedFile_.close();
+    }
+
+    @Override
+    DataStorage compress()
+    {
+      // Compressing would move the values onto the heap
+      return this;
+    }
+  }
+
+  /**
+   * Off-heap storage of double values.
+   */
+  static final class OffHeapDoubleStorage extends OffHeapStorage
+  {
+    OffHeapDoubleStorage(boolean isFileMapped, MappedFile mappedFile)
+    {
+      super(Double.class, 8, isFileMapped, mappedFile);
+    }
+
+    @Override
+    void add(Object value)
+    {
+      addDouble(value != null ? (Double) value : Double.NaN);
+    }
+
+    @Override
+    void addDouble(double value)
+    {
+      ByteBuffer block = nextBlock();
+      block.putDouble(getPosition(size_), value);
+      size_++;
+    }
+
+    @Override
+    void addAll(DataStorage storage)
+    {
+      OffHeapDoubleStorage s = (OffHeapDoubleStorage) storage;
+      for (int index = 0; index < s.size_; index++)
+        addDouble(s.getDouble(index));
+    }
+
+    @Override
+    void set(int index, Object value)
+    {
+      checkIndex(index);
+      blocks_[index >>> BLOCK_SHIFT].putDouble(getPosition(index), value != null ? (Double) value : Double.NaN);
+    }
+
+    @Override
+    Object get(int index)
+    {
+      double v = getDouble(index);
+      return Double.isNaN(v) ? null : v;
+    }
+
+    @Override
+    boolean isNull(int index)
+    {
+      return Double.isNaN(getDouble(index));
+    }
+
+    @Override
+    double getDouble(int index)
+    {
+      checkIndex(index);
+      return blocks_[index >>> BLOCK_SHIFT].getDouble(getPosition(index));
+    }
+  }
+
+  /**
+   * Off-heap storage of float values.
+   */
+  static final class OffHeapFloatStorage extends OffHeapStorage
+  {
+    OffHeapFloatStorage(boolean isFileMapped, MappedFile mappedFile)
+    {
+      super(Float.class, 4, isFileMapped, mappedFile);
+    }
+
+    @Override
+    void add(Object value)
+    {
+      addFloat(value != null ? (Float) value : Float.NaN);
+    }
+
+    @Override
+    void addDouble(double value)
+    {
+      addFloat((float) value);
+    }
+
+    /**
+     * Add a float value to this storage.
+     *
+     * @param value  Value to add. Float.NaN indicates no-value.
+     */
+    private void addFloat(float value)
+    {
+      ByteBuffer block = nextBlock();
+      block.putFloat(getPosition(size_), value);
+      size_++;
+    }
+
+    @Override
+    void addAll(DataStorage storage)
+    {
+      OffHeapFloatStorage s = (OffHeapFloatStorage) storage;
+      for (int index = 0; index < s.size_; index++)
+        addFloat(s.getFloat(index));
+    }
+
+    @Override
+    void set(int index, Object value)
+    {
+      checkIndex(index);
+      blocks_[index >>> BLOCK_SHIFT].putFloat(getPosition(index), value != null ? (Float) value : Float.NaN);
+    }
+
+    @Override
+    Object get(int index)
+    {
+      float v = getFloat(index);
+      return Float.isNaN(v) ? null : v;
+    }
+
+    @Override
+    boolean isNull(int index)
+    {
+      return Float.isNaN(getFloat(index));
+    }
+
+    @Override
+    double getDouble(int index)
+    {
+      return getFloat(index);
+    }
+
+    @Override
+    float getFloat(int index)
+    {
+      checkIndex(index);
+      return blocks_[index >>> BLOCK_SHIFT].getFloat(getPosition(index));
+    }
+  }
+
+  /**
+   * Off-heap storage of integer values.
+   */
+  static final class OffHeapIntStorage extends OffHeapStorage
+  {
+    OffHeapIntStorage(boolean isFileMapped, MappedFile mappedFile)
+    {
+      super(Integer.class, 4, isFileMapped, mappedFile);
+    }
+
+    @Override
+    void add(Object value)
+    {
+      addInt(value != null ? (Integer) value : Integer.MIN_VALUE);
+    }
+
+    @Override
+    void addDouble(double value)
+    {
+      addInt(Double.isNaN(value) ? Integer.MIN_VALUE : (int) Math.round(value));
+    }
+
+    /**
+     * Add an int value to this storage.
+     *
+     * @param value  Value to add. Integer.MIN_VALUE indicates no-value.
+     */
+    private void addInt(int value)
+    {
+      ByteBuffer block = nextBlock();
+      block.putInt(getPosition(size_), value);
+      size_++;
+    }
+
+    @Override
+    void addAll(DataStorage storage)
+    {
+      OffHeapIntStorage s = (OffHeapIntStorage) storage;
+      for (int index = 0; index < s.size_; index++)
+        addInt(s.getInt(index));
+    }
+
+    @Override
+    void set(int index, Object value)
+    {
+      checkIndex(index);
+      blocks_[index >>> BLOCK_SHIFT].putInt(getPosition(index), value != null ? (Integer) value : Integer.MIN_VALUE);
+    }
+
+    @Override
+    Object get(int index)
+    {
+      int v = getInt(index);
+      return v != Integer.MIN_VALUE ? v : null;
+    }
+
+    @Override
+    boolean isNull(int index)
+    {
+      return getInt(index) == Integer.MIN_VALUE;
+    }
+
+    @Override
+    double getDouble(int index)
+    {
+      int v = getInt(index);
+      return v != Integer.MIN_VALUE ? v : Double.NaN;
+    }
+
+    @Override
+    int getInt(int index)
+    {
+      checkIndex(index);
+      return blocks_[index >>> BLOCK_SHIFT].getInt(getPosition(index));
+    }
+
+    @Override
+    long getLong(int index)
+    {
+      int v = getInt(index);
+      return v != Integer.MIN_VALUE ? v : Long.MIN_VALUE;
+    }
+  }
+}
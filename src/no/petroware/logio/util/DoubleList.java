@@ -57,6 +57,19 @@ public final class DoubleList implements List<Double>
     return true;
   }
 
+  /**
+   * Add the specified primitive value to the end of this list.
+   * <p>
+   * This is equivalent to {@link #add(Double)} but avoids boxing.
+   *
+   * @param value  Value to add. Double.NaN indicates no-value.
+   */
+  public void add(double value)
+  {
+    ensureCapacity(size_ + 1);
+    array_[size_++] = value;
+  }
+
   /** {@inheritDoc} */
   @Override
   public void add(int index, Double value)
@@ -81,6 +94,22 @@ public final class DoubleList implements List<Double>
     return values.size() > 0;
   }
 
+  /**
+   * Add all the values of the specified list to the end of this list.
+   * <p>
+   * This is equivalent to {@link #addAll(Collection)} but avoids boxing.
+   *
+   * @param values  Values to add. Non-null.
+   * @return        True if this list changed as a result of the call.
+   */
+  public boolean addAll(DoubleList values)
+  {
+    ensureCapacity(size_ + values.size_);
+    System.arraycopy(values.array_, 0, array_, size_, values.size_);
+    size_ += values.size_;
+    return values.size_ > 0;
+  }
+
   /** {@inheritDoc} */
   @Override
   public boolean addAll(int index, Collection<? extends Double> values)
@@ -197,6 +226,35 @@ public final class DoubleList implements List<Double>
     return Double.isNaN(v) ? null : v;
   }
 
+  /**
+   * Return the primitive value at the specified index of this list.
+   * <p>
+   * This is equivalent to {@link #get(int)} but avoids boxing.
+   *
+   * @param index  Index of value to get. [0,size&gt;.
+   * @return       The requested value. Double.NaN if no-value.
+   * @throws IndexOutOfBoundsException  If index is out of bounds.
+   */
+  public double getDouble(int index)
+  {
+    if (index < 0 || index >= size_)
+      throw new IndexOutOfBoundsException("Index: " + index + " Size: " + size_);
+
+    return array_[index];
+  }
+
+  /**
+   * Copy all the values of this list into the specified array.
+   *
+   * @param dst     Array to copy into. Non-null.
+   * @param offset  Position in dst of the first value. [0,&gt;.
+   * @throws IndexOutOfBoundsException  If dst is too small to hold the values.
+   */
+  public void copyTo(double[] dst, int offset)
+  {
+    System.arraycopy(array_, 0, dst, offset, size_);
+  }
+
   /** {@inheritDoc} */
   @Override
   public Double set(int index, Double value)
@@ -333,12 +391,12 @@ public final class DoubleList implements List<Double>
    *
    * @param size  Size of elements. [0,&gt;.
    */
-  private void ensureCapacity(int size)
+  public void ensureCapacity(int size)
   {
     int oldCapacity = array_.length;
     if (size > oldCapacity) {
       double[] oldArray = array_;
-      int newCapacity = (oldCapacity * 3) / 2 + 1;
+      int newCapacity = Math.max((oldCapacity * 3) / 2 + 1, size);
       array_ = Arrays.copyOf(array_, newCapacity);
     }
   }
@@ -0,0 +1,376 @@
+package no.petroware.logio.util;
+
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+
+/**
+ * A growable matrix of double values kept in a single native array
+ * in row-major order, i.e.&nbsp;the values of a row are adjacent.
+ * <p>
+ * Useful for multi-dimensional data such as image curves, where all
+ * the values of a row are typically accessed together. Compared to
+ * one list per column there is a single array to grow, and a row
+ * is read from one contiguous memory location.
+ * <p>
+ * The columns are populated independently, each having its own size.
+ * Rows that are not yet populated in a column are Double.NaN in that
+ * column. The columns are accessible as {@link DataArray} instances
+ * through {@link #getColumn}.
+ *
+ * @author <a href="mailto:info@petroware.no">Petroware AS</a>
+ */
+public final class DoubleMatrix
+{
+  /** Largest number of values of the back-end array, as some VMs reserve a few header words. */
+  private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+  /** Number of columns of this matrix. [1,&gt;. */
+  private final int nColumns_;
+
+  /** Back-end array of capacity * nColumns values. */
+  private double[] array_;
+
+  /**
+   * Number of rows the back-end array has room for. [0,&gt;.
+   * As capacity * nColumns never exceeds MAX_ARRAY_SIZE, the
+   * position of a value within the capacity is always an int.
+   */
+  private int capacity_;
+
+  /** Current size of each column. */
+  private final int[] sizes_;
+
+  /** Size of the largest column. [0,&gt;. */
+  private int nRows_ = 0;
+
+  /** The columns as data arrays. Created on demand. */
+  private final DataArray[] columns_;
+
+  /**
+   * Create a new matrix with the specified number of columns
+   * and initial capacity.
+   *
+   * @param nColumns  Number of columns. [1,&gt;.
+   * @param capacity  Initial number of rows to make room for. [0,&gt;.
+   * @throws IllegalArgumentException  If nColumns or capacity is out of bounds.
+   */
+  public DoubleMatrix(int nColumns, int capacity)
+  {
+    if (nColumns < 1)
+      throw new IllegalArgumentException("Invalid nColumns: " + nColumns);
+
+    if (capacity < 0 || (long) capacity * nColumns > MAX_ARRAY_SIZE)
+      throw new IllegalArgumentException("Invalid capacity: " + capacity);
+
+    nColumns_ = nColumns;
+    capacity_ = capacity;
+    array_ = new double[capacity * nColumns];
+    Arrays.fill(array_, Double.NaN);
+    sizes_ = new int[nColumns];
+    columns_ = new DataArray[nColumns];
+  }
+
+  /**
+   * Create a new matrix with the specified number of columns
+   * and default capacity.
+   *
+   * @param nColumns  Number of columns. [1,&gt;.
+   * @throws IllegalArgumentException  If nColumns is out of bounds.
+   */
+  public DoubleMatrix(int nColumns)
+  {
+    this(nColumns, Math.max(1000 / Math.max(nColumns, 1), 1));
+  }
+
+  /**
+   * Return the number of columns of this matrix.
+   *
+   * @return  Number of columns of this matrix. [1,&gt;.
+   */
+  public int getNColumns()
+  {
+    return nColumns_;
+  }
+
+  /**
+   * Return the number of rows of this matrix, i.e.&nbsp;the size
+   * of the largest column.
+   *
+   * @return  Number of rows of this matrix. [0,&gt;.
+   */
+  public int getNRows()
+  {
+    return nRows_;
+  }
+
+  /**
+   * Return the number of values of the specified column.
+   *
+   * @param column  Column to check. [0,nColumns&gt;.
+   * @return        Number of values of the column. [0,&gt;.
+   * @throws ArrayIndexOutOfBoundsException  If column is out of bounds.
+   */
+  public int size(int column)
+  {
+    return sizes_[column];
+  }
+
+  /**
+   * Check that the specified row is within the specified column.
+   *
+   * @param row     Row to check.
+   * @param column  Column to check. [0,nColumns&gt;.
+   * @throws IndexOutOfBoundsException  If row is out of bounds.
+   */
+  private void checkRow(int row, int column)
+  {
+    if (row < 0 || row >= sizes_[column])
+      throw new IndexOutOfBoundsException("Index: " + row + " Size: " + sizes_[column]);
+  }
+
+  /**
+   * Add a value to the end of the specified column.
+   *
+   * @param column  Column to add to. [0,nColumns&gt;.
+   * @param value   Value to add. Double.NaN indicates no-value.
+   * @throws ArrayIndexOutOfBoundsException  If column is out of bounds.
+   */
+  public void add(int column, double value)
+  {
+    int row = sizes_[column];
+    ensureCapacity(row + 1);
+    array_[row * nColumns_ + column] = value;
+    sizes_[column] = row + 1;
+    if (row == nRows_)
+      nRows_++;
+  }
+
+  /**
+   * Add all the values of the specified matrix to the end of the
+   * corresponding columns of this matrix.
+   *
+   * @param matrix  Matrix to add values of. Non-null.
+   * @throws IllegalArgumentException  If matrix is null or has a different
+   *                                   number of columns than this matrix.
+   */
+  public void addAll(DoubleMatrix matrix)
+  {
+    if (matrix == null)
+      throw new IllegalArgumentException("matrix cannot be null");
+
+    if (matrix.nColumns_ != nColumns_)
+      throw new IllegalArgumentException("Incompatible nColumns: " + matrix.nColumns_);
+
+    int nRows = getNRows();
+    int nNewRows = matrix.getNRows();
+
+    // Complete rows are copied in one go
+    if (isRectangular() && matrix.isRectangular()) {
+      ensureCapacity((long) nRows + nNewRows);
+      System.arraycopy(matrix.array_, 0, array_, nRows * nColumns_, nNewRows * nColumns_);
+      Arrays.fill(sizes_, nRows + nNewRows);
+      nRows_ = nRows + nNewRows;
+      return;
+    }
+
+    for (int column = 0; column < nColumns_; column++) {
+      for (int row = 0; row < matrix.sizes_[column]; row++)
+        add(column, matrix.array_[row * nColumns_ + column]);
+    }
+  }
+
+  /**
+   * Check if all columns of this matrix are of the same size.
+   *
+   * @return  True if all columns are of the same size, false otherwise.
+   */
+  private boolean isRectangular()
+  {
+    for (int size : sizes_) {
+      if (size != sizes_[0])
+        return false;
+    }
+    return true;
+  }
+
+  /**
+   * Return the value at the specified row and column.
+   *
+   * @param row     Row of value to get. [0,size(column)&gt;.
+   * @param column  Column of value to get. [0,nColumns&gt;.
+   * @return        The requested value. Double.NaN if no-value.
+   * @throws IndexOutOfBoundsException  If row or column is out of bounds.
+   */
+  public double get(int row, int column)
+  {
+    checkRow(row, column);
+    return array_[row * nColumns_ + column];
+  }
+
+  /**
+   * Set the value at the specified row and column.
+   *
+   * @param row     Row of value to set. [0,size(column)&gt;.
+   * @param column  Column of value to set. [0,nColumns&gt;.
+   * @param value   Value to set. Double.NaN indicates no-value.
+   * @throws IndexOutOfBoundsException  If row or column is out of bounds.
+   */
+  public void set(int row, int column, double value)
+  {
+    checkRow(row, column);
+    array_[row * nColumns_ + column] = value;
+  }
+
+  /**
+   * Copy the values of the specified row into the specified array.
+   * Values not yet populated are Double.NaN.
+   *
+   * @param row     Row to copy. [0,nRows&gt;.
+   * @param dst     Array to copy into. Non-null.
+   * @param offset  Position in dst of the first value. [0,&gt;.
+   * @throws IndexOutOfBoundsException  If row is out of bounds or
+   *                                    dst is too small to hold the values.
+   */
+  public void getRow(int row, double[] dst, int offset)
+  {
+    if (row < 0 || row >= getNRows())
+      throw new IndexOutOfBoundsException("Index: " + row + " Size: " + getNRows());
+
+    System.arraycopy(array_, row * nColumns_, dst, offset, nColumns_);
+  }
+
+  /**
+   * Return a read-only view of the specified rows of this matrix,
+   * in row-major order. The values are not copied, and the view
+   * reflects later changes to the values until the matrix is grown
+   * or trimmed. Values not yet populated are Double.NaN.
+   *
+   * @param fromRow  First row of the view, inclusive. [0,nRows].
+   * @param toRow    Last row of the view, exclusive. [fromRow,nRows].
+   * @return         View of the requested rows. Never null.
+   * @throws IndexOutOfBoundsException  If fromRow or toRow is out of bounds.
+   */
+  public DoubleBuffer getRows(int fromRow, int toRow)
+  {
+    int nRows = getNRows();
+    if (fromRow < 0 || toRow > nRows || fromRow > toRow)
+      throw new IndexOutOfBoundsException("From: " + fromRow + " To: " + toRow + " Size: " + nRows);
+
+    return DoubleBuffer.wrap(array_, fromRow * nColumns_, (toRow - fromRow) * nColumns_).slice().asReadOnlyBuffer();
+  }
+
+  /**
+   * Copy all the values of the specified column into the specified array.
+   *
+   * @param column  Column to copy. [0,nColumns&gt;.
+   * @param dst     Array to copy into. Non-null.
+   * @param offset  Position in dst of the first value. [0,&gt;.
+   * @throws IndexOutOfBoundsException  If dst is too small to hold the values.
+   */
+  public void copyTo(int column, double[] dst, int offset)
+  {
+    int size = sizes_[column];
+    if (offset < 0 || offset + size > dst.length)
+      throw new IndexOutOfBoundsException("Offset: " + offset + " Size: " + size);
+
+    for (int row = 0, i = column; row < size; row++, i += nColumns_)
+      dst[offset + row] = array_[i];
+  }
+
+  /**
+   * Remove all the values of the specified column.
+   *
+   * @param column  Column to clear. [0,nColumns&gt;.
+   */
+  public void clear(int column)
+  {
+    for (int row = 0, i = column; row < sizes_[column]; row++, i += nColumns_)
+      array_[i] = Double.NaN;
+
+    sizes_[column] = 0;
+
+    nRows_ = 0;
+    for (int size : sizes_)
+      nRows_ = Math.max(nRows_, size);
+  }
+
+  /**
+   * Return the specified column of this matrix as a data array of type
+   * Double. The data array is a view of the column, and changes to it
+   * are reflected in this matrix and vice versa.
+   *
+   * @param column  Column to get. [0,nColumns&gt;.
+   * @return        The requested column. Never null.
+   * @throws IllegalArgumentException  If column is out of bounds.
+   */
+  public DataArray getColumn(int column)
+  {
+    if (column < 0 || column >= nColumns_)
+      throw new IllegalArgumentException("Invalid column: " + column);
+
+    if (columns_[column] == null)
+      columns_[column] = new DataArray(new DataStorage.MatrixColumnStorage(this, column));
+
+    return columns_[column];
+  }
+
+  /**
+   * Ensure that the back-end array has room for the specified
+   * number of rows.
+   *
+   * @param nRows  Number of rows. [0,&gt;.
+   * @throws OutOfMemoryError  If the values of the rows are more than
+   *                           an array can hold.
+   */
+  public void ensureCapacity(int nRows)
+  {
+    ensureCapacity((long) nRows);
+  }
+
+  /**
+   * Ensure that the back-end array has room for the specified
+   * number of rows. The sizes are computed in long so that they
+   * cannot wrap around for wide matrices.
+   *
+   * @param nRows  Number of rows. [0,&gt;.
+   * @throws OutOfMemoryError  If the values of the rows are more than
+   *                           an array can hold.
+   */
+  private void ensureCapacity(long nRows)
+  {
+    if (nRows <= capacity_)
+      return;
+
+    long maxCapacity = MAX_ARRAY_SIZE / nColumns_;
+    if (nRows > maxCapacity)
+      throw new OutOfMemoryError("Matrix too large: " + nRows + " x " + nColumns_);
+
+    // The growth is limited by the largest array rather than failing
+    long newCapacity = Math.min(Math.max((capacity_ * 3L) / 2 + 1, nRows), maxCapacity);
+
+    int oldLength = array_.length;
+    array_ = Arrays.copyOf(array_, (int) newCapacity * nColumns_);
+    Arrays.fill(array_, oldLength, array_.length, Double.NaN);
+    capacity_ = (int) newCapacity;
+  }
+
+  /**
+   * Trim the back-end array to the actual number of rows.
+   * Typically done to save space when the matrix will grow no longer.
+   */
+  public void trimToSize()
+  {
+    int nRows = getNRows();
+    if (nRows < capacity_) {
+      array_ = Arrays.copyOf(array_, nRows * nColumns_);
+      capacity_ = nRows;
+    }
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public String toString()
+  {
+    return "DoubleMatrix: " + getNRows() + " x " + nColumns_;
+  }
+}
@@ -43,6 +43,19 @@ public final class FloatList implements List<Float>
     return true;
   }
 
+  /**
+   * Add the specified primitive value to the end of this list.
+   * <p>
+   * This is equivalent to {@link #add(Float)} but avoids boxing.
+   *
+   * @param value  Value to add. Float.NaN indicates no-value.
+   */
+  public void add(float value)
+  {
+    ensureCapacity(size_ + 1);
+    array_[size_++] = value;
+  }
+
   /** {@inheritDoc} */
   @Override
   public void add(int index, Float value)
@@ -67,6 +80,22 @@ public final class FloatList implements List<Float>
     return values.size() > 0;
   }
 
+  /**
+   * Add all the values of the specified list to the end of this list.
+   * <p>
+   * This is equivalent to {@link #addAll(Collection)} but avoids boxing.
+   *
+   * @param values  Values to add. Non-null.
+   * @return        True if this list changed as a result of the call.
+   */
+  public boolean addAll(FloatList values)
+  {
+    ensureCapacity(size_ + values.size_);
+    System.arraycopy(values.array_, 0, array_, size_, values.size_);
+    size_ += values.size_;
+    return values.size_ > 0;
+  }
+
   /** {@inheritDoc} */
   @Override
   public boolean addAll(int index, Collection<? extends Float> values)
@@ -183,6 +212,40 @@ public final class FloatList implements List<Float>
     return Float.isNaN(v) ? null : v;
   }
 
+  /**
+   * Return the primitive value at the specified index of this list.
+   * <p>
+   * This is equivalent to {@link #get(int)} but avoids boxing.
+   *
+   * @param index  Index of value to get. [0,size&gt;.
+   * @return       The requested value. Float.NaN if no-value.
+   * @throws IndexOutOfBoundsException  If index is out of bounds.
+   */
+  public float getFloat(int index)
+  {
+    if (index < 0 || index >= size_)
+      throw new IndexOutOfBoundsException("Index: " + index + " Size: " + size_);
+
+    return array_[index];
+  }
+
+  /**
+   * Copy all the values of this list into the specified array.
+   * No-values are copied as Double.NaN.
+   *
+   * @param dst     Array to copy into. Non-null.
+   * @param offset  Position in dst of the first value. [0,&gt;.
+   * @throws IndexOutOfBoundsException  If dst is too small to hold the values.
+   */
+  public void copyTo(double[] dst, int offset)
+  {
+    if (offset < 0 || offset + size_ > dst.length)
+      throw new IndexOutOfBoundsException("Offset: " + offset + " Size: " + size_);
+
+    for (int i = 0; i < size_; i++)
+      dst[offset + i] = array_[i];
+  }
+
   /** {@inheritDoc} */
   @Override
   public Float set(int index, Float value)
@@ -319,12 +382,12 @@ public final class FloatList implements List<Float>
    *
    * @param size  Size of elements. [0,&gt;.
    */
-  private void ensureCapacity(int size)
+  public void ensureCapacity(int size)
   {
     int oldCapacity = array_.length;
     if (size > oldCapacity) {
       float[] oldArray = array_; // ??
-      int newCapacity = (oldCapacity * 3) / 2 + 1;
+      int newCapacity = Math.max((oldCapacity * 3) / 2 + 1, size);
       array_ = Arrays.copyOf(array_, newCapacity);
     }
   }
@@ -8,6 +8,8 @@ import java.util.Locale;
  * A class capable of formatting (i.e write as text) numbers so that
  * they get uniform appearance and can be presented together, typically
  * in a column with decimal symbol aligned etc.
+ * <p>
+ * A formatter may be used by several threads concurrently.
  *
  * @author <a href="mailto:info@petroware.no">Petroware AS</a>
  */
@@ -25,9 +27,51 @@ public final class Formatter
   /** The largest value before switching to scientific notation. */
   private static final double MAX_NON_SCIENTIFIC = 9999999.0;
 
+  /** Powers of ten that are exact as doubles. */
+  private static final double[] POWERS_OF_TEN = {
+    1.0e0,  1.0e1,  1.0e2,  1.0e3,  1.0e4,  1.0e5,  1.0e6,  1.0e7,
+    1.0e8,  1.0e9,  1.0e10, 1.0e11, 1.0e12, 1.0e13, 1.0e14, 1.0e15,
+    1.0e16, 1.0e17, 1.0e18, 1.0e19, 1.0e20, 1.0e21, 1.0e22
+  };
+
+  /** Powers of ten as longs, for splitting digits into whole and fraction parts. */
+  private static final long[] LONG_POWERS_OF_TEN = {
+    1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L,
+    100000000L, 1000000000L, 10000000000L, 100000000000L, 1000000000000L,
+    10000000000000L, 100000000000000L, 1000000000000000L, 10000000000000000L
+  };
+
+  /** The largest integer below which all integers are exact as doubles. */
+  private static final double MAX_EXACT = 9007199254740992.0;
+
   /** The format to use. Non-null. */
   private final DecimalFormat format_;
 
+  /** Number of significant digits of this formatter. [0,&gt;. */
+  private final int nSignificantDigits_;
+
+  /** Number of decimals of this formatter. [0,&gt;. */
+  private final int nDecimals_;
+
+  /** True if this formatter uses scientific notation, false otherwise. */
+  private final boolean isScientific_;
+
+  /** Locale of this formatter. Non-null. */
+  private final Locale locale_;
+
+  /**
+   * True if the format symbols of the locale are the plain ASCII ones,
+   * so that values can be formatted without the back-end decimal format.
+   */
+  private final boolean isAscii_;
+
+  /**
+   * Formatters for values not formatted accurately by this formatter,
+   * by number of decimals, with the scientific one last. Created on
+   * demand. Entries are null until needed.
+   */
+  private final Formatter[] accurateFormatters_;
+
   /**
    * Return number of significant decimals there is in the
    * specified floating point value.
@@ -171,6 +215,19 @@ public final class Formatter
     //
     DecimalFormatSymbols formatSymbols = new DecimalFormatSymbols(actualLocale);
     format_ = new DecimalFormat(formatString.toString(), formatSymbols);
+
+    nSignificantDigits_ = nActualSignificantDigits;
+    nDecimals_ = nActualDecimals;
+    isScientific_ = isScientific;
+    locale_ = actualLocale;
+    isAscii_ = formatSymbols.getZeroDigit() == '0' &&
+               formatSymbols.getDecimalSeparator() == '.' &&
+               formatSymbols.getMinusSign() == '-' &&
+               formatSymbols.getExponentSeparator().equals("E");
+
+    // Values in the non-scientific range need at most this many decimals
+    int nMaxDecimals = Math.max(nActualSignificantDigits - 1 - (int) Math.floor(Math.log10(MIN_NON_SCIENTIFIC)), 0);
+    accurateFormatters_ = new Formatter[nMaxDecimals + 2];
   }
 
   /**
@@ -202,16 +259,244 @@ public final class Formatter
    */
   public String format(double value)
   {
+    StringBuilder s = new StringBuilder();
+    format(value, s);
+    return s.toString();
+  }
+
+  /**
+   * Format the specified value according to the formatting defined
+   * by this formatter, and append it to the specified string builder.
+   * <p>
+   * This is equivalent to {@link #format(double)}, but creates no
+   * intermediate objects for most values, so that a single string
+   * builder can be reused for any number of values.
+   *
+   * @param value  Value to format,
+   * @param s      String builder to append to. Non-null.
+   * @throws IllegalArgumentException  If s is null.
+   */
+  public void format(double value, StringBuilder s)
+  {
+    if (s == null)
+      throw new IllegalArgumentException("s cannot be null");
+
     // Handle the non-printable characters
     if (Double.isNaN(value) || Double.isInfinite(value))
-      return "";
+      return;
 
     // 0.0 easily gets lost if written with many decimals like 0.00000.
     // Consequently we write this as either 0.0 or 0
-    if (value == 0.0)
-      return format_.getMaximumFractionDigits() == 0 ? "0" : "0.0";
+    if (value == 0.0) {
+      s.append(format_.getMaximumFractionDigits() == 0 ? "0" : "0.0");
+      return;
+    }
+
+    if (isAscii_ && formatDirectly(value, s))
+      return;
+
+    // The back-end decimal format is not thread safe
+    synchronized (format_) {
+      s.append(format_.format(value));
+    }
+  }
+
+  /**
+   * Format the specified value the way the back-end decimal format does,
+   * but without creating any objects, and append it to the specified
+   * string builder.
+   * <p>
+   * The value is scaled by a power of ten and rounded half-even to a whole
+   * number of digits. This is exact unless the scaled value is beyond the
+   * range of exact integers or too close to a rounding tie to tell which
+   * way the exact value rounds. Such values are left to the back-end
+   * decimal format.
+   *
+   * @param value  Value to format. Non-zero and finite.
+   * @param s      String builder to append to. Non-null.
+   * @return       True if the value was appended, false if it should be
+   *               formatted by the back-end decimal format.
+   */
+  private boolean formatDirectly(double value, StringBuilder s)
+  {
+    assert s != null : "s cannot be null";
+
+    if (nDecimals_ >= LONG_POWERS_OF_TEN.length - 1)
+      return false;
+
+    double v = Math.abs(value);
+
+    int exponent = isScientific_ ? (int) Math.floor(Math.log10(v)) : 0;
+
+    double minScaled = POWERS_OF_TEN[nDecimals_];
+    double maxScaled = minScaled * 10.0;
+
+    double scaled = 0.0;
+    for (int i = 0; i < 3; i++) {
+      int scale = nDecimals_ - exponent;
+      if (scale >= POWERS_OF_TEN.length || scale <= -POWERS_OF_TEN.length)
+        return false;
+
+      scaled = scale >= 0 ? v * POWERS_OF_TEN[scale] : v / POWERS_OF_TEN[-scale];
+
+      // The exponent from the logarithm may be off by one
+      if (!isScientific_ || scaled >= minScaled && scaled < maxScaled)
+        break;
+
+      exponent += scaled < minScaled ? -1 : 1;
+    }
+
+    if (isScientific_ && (scaled < minScaled || scaled >= maxScaled))
+      return false;
+
+    // The scaled value is within half a unit in the last place of the
+    // exact one, so a fraction close to one half may round either way
+    if (scaled >= MAX_EXACT)
+      return false;
+
+    double whole = Math.floor(scaled);
+    double fraction = scaled - whole;
+    if (Math.abs(fraction - 0.5) <= Math.ulp(scaled))
+      return false;
+
+    long digits = (long) whole;
+    if (fraction > 0.5)
+      digits++;
+
+    // Rounding may add a digit to the mantissa
+    if (isScientific_ && digits == 10L * LONG_POWERS_OF_TEN[nDecimals_]) {
+      digits /= 10;
+      exponent++;
+    }
+
+    if (value < 0.0)
+      s.append('-');
+
+    long unit = LONG_POWERS_OF_TEN[nDecimals_];
+    s.append(digits / unit);
+
+    if (nDecimals_ > 0 || format_.isDecimalSeparatorAlwaysShown())
+      s.append('.');
+
+    if (nDecimals_ > 0) {
+      long fractionDigits = digits % unit;
+      for (long d = unit / 10; d > fractionDigits && d > 1; d /= 10)
+        s.append('0');
+      s.append(fractionDigits);
+    }
+
+    if (isScientific_) {
+      s.append('E');
+      s.append(exponent);
+    }
+
+    return true;
+  }
+
+  /**
+   * Check if the specified value is represented exactly with
+   * the specified number of decimals.
+   *
+   * @param value      Value to check.
+   * @param nDecimals  Number of decimals. [0,&gt;.
+   * @return           True if the value is represented exactly, false otherwise.
+   */
+  private static boolean isExact(double value, int nDecimals)
+  {
+    double scaled = value * Math.pow(10.0, nDecimals);
+    return Math.abs(scaled - Math.rint(scaled)) <= 1.0e-9 * Math.abs(scaled);
+  }
+
+  /**
+   * Check if the specified value is formatted by this formatter with
+   * the number of significant digits of the formatter, or exactly.
+   *
+   * @param value  Value to check.
+   * @return       True if the value is formatted accurately by this
+   *               formatter, false otherwise.
+   */
+  private boolean isAccurate(double value)
+  {
+    if (Double.isNaN(value) || Double.isInfinite(value) || value == 0.0)
+      return true;
+
+    if (isScientific_)
+      return nDecimals_ + 1 >= nSignificantDigits_;
+
+    double v = Math.abs(value);
+
+    int exponent = (int) Math.floor(Math.log10(v));
+    if (exponent + 1 + nDecimals_ >= nSignificantDigits_)
+      return true;
+
+    return isExact(v, nDecimals_);
+  }
+
+  /**
+   * Format the specified value according to the formatting defined by
+   * this formatter if this keeps the significant digits of the value,
+   * or by a format of its own otherwise.
+   * <p>
+   * This is useful when the formatter is created from a sample of the
+   * values to format, as values beyond the sample may need more decimals
+   * or scientific notation to be represented accurately.
+   *
+   * @param value  Value to format,
+   * @return       Text representation of the value. Never null.
+   */
+  public String formatAccurately(double value)
+  {
+    StringBuilder s = new StringBuilder();
+    formatAccurately(value, s);
+    return s.toString();
+  }
+
+  /**
+   * Format the specified value as by {@link #formatAccurately(double)},
+   * and append it to the specified string builder.
+   *
+   * @param value  Value to format,
+   * @param s      String builder to append to. Non-null.
+   * @throws IllegalArgumentException  If s is null.
+   */
+  public void formatAccurately(double value, StringBuilder s)
+  {
+    if (s == null)
+      throw new IllegalArgumentException("s cannot be null");
+
+    if (isAccurate(value)) {
+      format(value, s);
+      return;
+    }
+
+    double v = Math.abs(value);
+
+    // The decimals needed for the significant digits, if not scientific
+    int formatterNo = accurateFormatters_.length - 1;
+    Integer nDecimals = null;
+    if (v >= MIN_NON_SCIENTIFIC && v <= MAX_NON_SCIENTIFIC) {
+      int exponent = (int) Math.floor(Math.log10(v));
+      int nMaxDecimals = Math.min(Math.max(nSignificantDigits_ - 1 - exponent, 0), accurateFormatters_.length - 2);
+
+      nDecimals = 0;
+      while (nDecimals < nMaxDecimals && !isExact(v, nDecimals))
+        nDecimals++;
+
+      formatterNo = nDecimals;
+    }
+
+    //
+    // The formatters depend on the number of decimals only, so these
+    // are shared by all values. Concurrent threads may create the same
+    // formatter, which is harmless.
+    //
+    Formatter formatter = accurateFormatters_[formatterNo];
+    if (formatter == null) {
+      formatter = new Formatter(new double[] {value}, nSignificantDigits_, nDecimals, locale_);
+      accurateFormatters_[formatterNo] = formatter;
+    }
 
-    return format_.format(value);
+    formatter.format(value, s);
   }
 
   /**
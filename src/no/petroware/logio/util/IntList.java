@@ -45,6 +45,19 @@ public final class IntList implements List<Integer>
     return true;
   }
 
+  /**
+   * Add the specified primitive value to the end of this list.
+   * <p>
+   * This is equivalent to {@link #add(Integer)} but avoids boxing.
+   *
+   * @param value  Value to add. Integer.MIN_VALUE indicates no-value.
+   */
+  public void add(int value)
+  {
+    ensureCapacity(size_ + 1);
+    array_[size_++] = value;
+  }
+
   /** {@inheritDoc} */
   @Override
   public void add(int index, Integer value)
@@ -69,6 +82,22 @@ public final class IntList implements List<Integer>
     return values.size() > 0;
   }
 
+  /**
+   * Add all the values of the specified list to the end of this list.
+   * <p>
+   * This is equivalent to {@link #addAll(Collection)} but avoids boxing.
+   *
+   * @param values  Values to add. Non-null.
+   * @return        True if this list changed as a result of the call.
+   */
+  public boolean addAll(IntList values)
+  {
+    ensureCapacity(size_ + values.size_);
+    System.arraycopy(values.array_, 0, array_, size_, values.size_);
+    size_ += values.size_;
+    return values.size_ > 0;
+  }
+
   /** {@inheritDoc} */
   @Override
   public boolean addAll(int index, Collection<? extends Integer> values)
@@ -185,6 +214,42 @@ public final class IntList implements List<Integer>
     return v == NO_VALUE ? null : v;
   }
 
+  /**
+   * Return the primitive value at the specified index of this list.
+   * <p>
+   * This is equivalent to {@link #get(int)} but avoids boxing.
+   *
+   * @param index  Index of value to get. [0,size&gt;.
+   * @return       The requested value. Integer.MIN_VALUE if no-value.
+   * @throws IndexOutOfBoundsException  If index is out of bounds.
+   */
+  public int getInt(int index)
+  {
+    if (index < 0 || index >= size_)
+      throw new IndexOutOfBoundsException("Index: " + index + " Size: " + size_);
+
+    return array_[index];
+  }
+
+  /**
+   * Copy all the values of this list into the specified array.
+   * No-values are copied as Double.NaN.
+   *
+   * @param dst     Array to copy into. Non-null.
+   * @param offset  Position in dst of the first value. [0,&gt;.
+   * @throws IndexOutOfBoundsException  If dst is too small to hold the values.
+   */
+  public void copyTo(double[] dst, int offset)
+  {
+    if (offset < 0 || offset + size_ > dst.length)
+      throw new IndexOutOfBoundsException("Offset: " + offset + " Size: " + size_);
+
+    for (int i = 0; i < size_; i++) {
+      int v = array_[i];
+      dst[offset + i] = v != NO_VALUE ? v : Double.NaN;
+    }
+  }
+
   /** {@inheritDoc} */
   @Override
   public Integer set(int index, Integer value)
@@ -321,12 +386,12 @@ public final class IntList implements List<Integer>
    *
    * @param size  Size of elements. [0,&gt;.
    */
-  private void ensureCapacity(int size)
+  public void ensureCapacity(int size)
   {
     int oldCapacity = array_.length;
     if (size > oldCapacity) {
       int[] oldArray = array_;
-      int newCapacity = (oldCapacity * 3) / 2 + 1;
+      int newCapacity = Math.max((oldCapacity * 3) / 2 + 1, size);
       array_ = Arrays.copyOf(array_, newCapacity);
     }
   }
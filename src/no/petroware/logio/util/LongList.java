@@ -0,0 +1,541 @@
+package no.petroware.logio.util;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A List implementation wrapping a native long array.
+ * <p>
+ * Useful if the array becomes <em>very</em> large as this is both
+ * a lot faster and requires less storage than a List&lt;Long&gt;.
+ * <p>
+ * As all long values are valid, no-values are kept in a separate
+ * bitmap rather than as a special value.
+ *
+ * @author <a href="mailto:info@petroware.no">Petroware AS</a>
+ */
+public final class LongList implements List<Long>
+{
+  private long[] array_;
+
+  /** Bit i is set if element i is a no-value. */
+  private long[] nulls_;
+
+  private int size_ = 0;
+
+  public LongList(int capacity)
+  {
+    array_ = new long[capacity];
+    nulls_ = new long[(capacity + 63) / 64];
+  }
+
+  public LongList()
+  {
+    // A large initial capacity to indicate the fact that the
+    // class should mainly be with very large collections.
+    this(1000);
+  }
+
+  /**
+   * Check if the element at the specified index is a no-value.
+   *
+   * @param index  Index of element to check. [0,size&gt;.
+   * @return       True if the element is a no-value, false otherwise.
+   */
+  public boolean isNull(int index)
+  {
+    return (nulls_[index >> 6] & (1L << index)) != 0;
+  }
+
+  /**
+   * Mark the element at the specified index as a no-value or not.
+   *
+   * @param index   Index of element to mark. [0,capacity&gt;.
+   * @param isNull  True to mark as no-value, false otherwise.
+   */
+  private void setNull(int index, boolean isNull)
+  {
+    if (isNull)
+      nulls_[index >> 6] |= 1L << index;
+    else
+      nulls_[index >> 6] &= ~(1L << index);
+  }
+
+  /**
+   * Store the specified value at the specified index.
+   *
+   * @param index  Index to store at. [0,capacity&gt;.
+   * @param value  Value to store. May be null.
+   */
+  private void store(int index, Long value)
+  {
+    array_[index] = value != null ? value : 0;
+    setNull(index, value == null);
+  }
+
+  /**
+   * Return the element at the specified index.
+   *
+   * @param index  Index of element to return. [0,capacity&gt;.
+   * @return       The requested element. Null if no-value.
+   */
+  private Long load(int index)
+  {
+    return isNull(index) ? null : array_[index];
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public boolean add(Long value)
+  {
+    ensureCapacity(size_ + 1);
+    store(size_++, value);
+    return true;
+  }
+
+  /**
+   * Add the specified primitive value to the end of this list.
+   * <p>
+   * This is equivalent to {@link #add(Long)} but avoids boxing.
+   *
+   * @param value  Value to add.
+   */
+  public void add(long value)
+  {
+    ensureCapacity(size_ + 1);
+    array_[size_] = value;
+    setNull(size_, false);
+    size_++;
+  }
+
+  /**
+   * Return the element at the specified index as a primitive.
+   * <p>
+   * This is equivalent to {@link #get(int)} but avoids boxing.
+   *
+   * @param index  Index of element to return. [0,size&gt;.
+   * @return       The requested element. Unspecified if no-value, see {@link #isNull}.
+   * @throws IndexOutOfBoundsException  If index is out of bounds.
+   */
+  public long getLong(int index)
+  {
+    if (index < 0 || index >= size_)
+      throw new IndexOutOfBoundsException("Index: " + index + " Size: " + size_);
+
+    return array_[index];
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void add(int index, Long value)
+  {
+    if (index < 0 || index > size_)
+      throw new IndexOutOfBoundsException("Index: " + index + " Size: " + size_);
+
+    ensureCapacity(size_ + 1);
+    System.arraycopy(array_, index, array_, index + 1, size_ - index);
+    for (int i = size_; i > index; i--)
+      setNull(i, isNull(i - 1));
+
+    store(index, value);
+
+    size_++;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public boolean addAll(Collection<? extends Long> values)
+  {
+    for (Long value : values)
+      add(value);
+    return values.size() > 0;
+  }
+
+  /**
+   * Add all the values of the specified list to the end of this list.
+   * <p>
+   * This is equivalent to {@link #addAll(Collection)} but avoids boxing.
+   *
+   * @param values  Values to add. Non-null.
+   * @return        True if this list changed as a result of the call.
+   */
+  public boolean addAll(LongList values)
+  {
+    ensureCapacity(size_ + values.size_);
+    System.arraycopy(values.array_, 0, array_, size_, values.size_);
+    for (int i = 0; i < values.size_; i++)
+      setNull(size_ + i, values.isNull(i));
+    size_ += values.size_;
+    return values.size_ > 0;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public boolean addAll(int index, Collection<? extends Long> values)
+  {
+    int d = 0;
+    for (Long value : values) {
+      add(index + d, value);
+      d++;
+    }
+    return values.size() > 0;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void clear()
+  {
+    size_ = 0;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public boolean contains(Object value)
+  {
+    return indexOf(value) != -1;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public int indexOf(Object value)
+  {
+    if (value != null && !(value instanceof Long))
+      return -1;
+
+    long v = value != null ? (Long) value : 0;
+
+    for (int index = 0; index < size_; index++)
+      if (value == null ? isNull(index) : !isNull(index) && v == array_[index])
+        return index;
+
+    return -1;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public int lastIndexOf(Object value)
+  {
+    if (value != null && !(value instanceof Long))
+      return -1;
+
+    long v = value != null ? (Long) value : 0;
+
+    for (int index = size_ - 1; index >= 0; index--)
+      if (value == null ? isNull(index) : !isNull(index) && v == array_[index])
+        return index;
+
+    return -1;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public boolean containsAll(Collection<?> collection)
+  {
+    for (Object value : collection)
+      if (!contains(value))
+        return false;
+
+    return true;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public int hashCode()
+  {
+    int hashCode = 1;
+    for (Long value : this)
+      hashCode = 31 * hashCode + (value == null ? 0 : value.hashCode());
+
+    return hashCode;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public boolean equals(Object object)
+  {
+    if (object == this)
+      return true;
+
+    if (!(object instanceof List))
+      return false;
+
+    ListIterator<Long> e1 = listIterator();
+    ListIterator<?> e2 = ((List) object).listIterator();
+
+    while (e1.hasNext() && e2.hasNext()) {
+      Long o1 = e1.next();
+      Object o2 = e2.next();
+
+      if (!(o1 == null ? o2 == null : o1.equals(o2)))
+        return false;
+    }
+
+    return !(e1.hasNext() || e2.hasNext());
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Long get(int index)
+  {
+    if (index < 0 || index >= size_)
+      throw new IndexOutOfBoundsException("Index: " + index + " Size: " + size_);
+
+    return load(index);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Long set(int index, Long value)
+  {
+    if (index < 0 || index >= size_)
+      throw new IndexOutOfBoundsException("Index: " + index + " Size: " + size_);
+
+    Long oldValue = load(index);
+    store(index, value);
+
+    return oldValue;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public int size()
+  {
+    return size_;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public boolean isEmpty()
+  {
+    return size_ == 0;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public List<Long> subList(int fromIndex, int toINdex)
+  {
+    throw new UnsupportedOperationException("Not supported. Use java.util.ArrayList instead");
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public ListIterator<Long> listIterator()
+  {
+    return new ListItr(0);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public ListIterator<Long> listIterator(int index)
+  {
+    if (index < 0 || index > size_)
+      throw new IndexOutOfBoundsException("Index: " + index + " Size: " + size_);
+
+    return new ListItr(index);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Iterator<Long> iterator()
+  {
+    return listIterator();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Long remove(int index)
+  {
+    Long oldValue = load(index);
+
+    int nMoved = size_ - index - 1;
+    if (nMoved > 0) {
+      System.arraycopy(array_, index + 1, array_, index, nMoved);
+      for (int i = index; i < size_ - 1; i++)
+        setNull(i, isNull(i + 1));
+    }
+
+    size_--;
+
+    return oldValue;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public boolean remove(Object object)
+  {
+    int index = indexOf(object);
+    if (index == -1)
+      return false;
+
+    remove(index);
+    return true;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public boolean removeAll(Collection<?> collection)
+  {
+    throw new UnsupportedOperationException("Not supported. Use java.util.ArrayList instead");
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public boolean retainAll(Collection<?> collection)
+  {
+    throw new UnsupportedOperationException("Not supported. Use java.util.ArrayList instead");
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Object[] toArray()
+  {
+    Object[] array = new Object[size_];
+    for (int i = 0; i < size_; i++)
+      array[i] = load(i);
+
+    return array;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public <T> T[] toArray(T[] array)
+  {
+    throw new UnsupportedOperationException("Use toArray() instead");
+  }
+
+  /**
+   * Ensure that the backing list as enough capacity for the specified
+   * number of entries.
+   *
+   * @param size  Size of elements. [0,&gt;.
+   */
+  public void ensureCapacity(int size)
+  {
+    int oldCapacity = array_.length;
+    if (size > oldCapacity) {
+      int newCapacity = Math.max((oldCapacity * 3) / 2 + 1, size);
+      array_ = Arrays.copyOf(array_, newCapacity);
+      nulls_ = Arrays.copyOf(nulls_, (newCapacity + 63) / 64);
+    }
+  }
+
+  public void trimToSize()
+  {
+    int capacity = array_.length;
+    if (size_ < capacity) {
+      array_ = Arrays.copyOf(array_, size_);
+      nulls_ = Arrays.copyOf(nulls_, (size_ + 63) / 64);
+    }
+  }
+
+  private class Itr implements Iterator<Long>
+  {
+    protected int cursor_;       // index of next element to return
+    protected int lastRet_ = -1; // index of last element returned; -1 if no such
+
+    public boolean hasNext()
+    {
+      return cursor_ != size_;
+    }
+
+    public Long next()
+    {
+      int i = cursor_;
+      if (i >= size_)
+        throw new NoSuchElementException();
+
+      if (i >= array_.length)
+        throw new ConcurrentModificationException();
+
+      cursor_ = i + 1;
+
+      return load(lastRet_ = i);
+    }
+
+    public void remove()
+    {
+      if (lastRet_ < 0)
+        throw new IllegalStateException();
+
+      try {
+        LongList.this.remove(lastRet_);
+        cursor_ = lastRet_;
+        lastRet_ = -1;
+      }
+      catch (IndexOutOfBoundsException exception) {
+        throw new ConcurrentModificationException();
+      }
+    }
+  }
+
+  /**
+   * An optimized version of AbstractList.ListItr
+   */
+  private class ListItr extends Itr implements ListIterator<Long>
+  {
+    private ListItr(int index)
+    {
+      cursor_ = index;
+    }
+
+    public boolean hasPrevious()
+    {
+      return cursor_ != 0;
+    }
+
+    public int nextIndex()
+    {
+      return cursor_;
+    }
+
+    public int previousIndex()
+    {
+      return cursor_ - 1;
+    }
+
+    public Long previous()
+    {
+      int i = cursor_ - 1;
+      if (i < 0)
+        throw new NoSuchElementException();
+
+      if (i >= array_.length)
+        throw new ConcurrentModificationException();
+
+      cursor_ = i;
+
+      return load(lastRet_ = i);
+    }
+
+    public void set(Long value)
+    {
+      if (lastRet_ < 0)
+        throw new IllegalStateException();
+
+      try {
+        LongList.this.set(lastRet_, value);
+      }
+      catch (IndexOutOfBoundsException exception) {
+        throw new ConcurrentModificationException();
+      }
+    }
+
+    public void add(Long value)
+    {
+      try {
+        int i = cursor_;
+        LongList.this.add(i, value);
+        cursor_ = i + 1;
+        lastRet_ = -1;
+      }
+      catch (IndexOutOfBoundsException exception) {
+        throw new ConcurrentModificationException();
+      }
+    }
+  }
+}
@@ -0,0 +1,97 @@
+package no.petroware.logio.util;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * A temporary file that the data arrays in {@link MemoryMode#FILE_MAPPED}
+ * mode map their values from. Sharing one file between many data arrays,
+ * such as all the curves read by one reader, avoids a file per curve.
+ * <p>
+ * Regions are mapped from the end of the file, which grows accordingly.
+ * The mapped regions stay valid after the file is closed, and further
+ * regions are then mapped from a new file. Where the platform allows it
+ * the file is deleted as soon as it is opened, so that it never outlives
+ * the mapped regions. Otherwise it is deleted on close, or on exit if
+ * still in use.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @author <a href="mailto:info@petroware.no">Petroware AS</a>
+ */
+public final class MappedFile
+  implements Closeable
+{
+  /** The current file. Null if not open, or if deleted already. */
+  private File file_ = null;
+
+  /** Channel of the current file. Null if not open. */
+  private FileChannel fileChannel_ = null;
+
+  /** Current size of the file. [0,&gt;. */
+  private long fileSize_ = 0L;
+
+  /**
+   * Create a mapped file. The actual file is not created until
+   * the first region is mapped.
+   */
+  public MappedFile()
+  {
+    // Nothing
+  }
+
+  /**
+   * Map a new region of the specified size at the end of this file.
+   *
+   * @param nBytes  Size of the region in bytes. [1,&gt;.
+   * @return        The mapped region, in native byte order. Never null.
+   * @throws IOException  If creating or mapping the file fails for some reason.
+   */
+  synchronized ByteBuffer map(int nBytes)
+    throws IOException
+  {
+    assert nBytes > 0 : "Invalid nBytes: " + nBytes;
+
+    if (fileChannel_ == null) {
+      File file = File.createTempFile("logio", ".dat");
+      fileChannel_ = new RandomAccessFile(file, "rw").getChannel();
+      fileSize_ = 0L;
+      file_ = file.delete() ? null : file;
+    }
+
+    // The mapping extends the file
+    ByteBuffer region = fileChannel_.map(FileChannel.MapMode.READ_WRITE, fileSize_, nBytes);
+    fileSize_ += nBytes;
+
+    return region.order(ByteOrder.nativeOrder());
+  }
+
+  /**
+   * Close the current file. The regions mapped so far stay valid,
+   * and further regions are mapped from a new file.
+   */
+  @Override
+  public synchronized void close()
+  {
+    if (fileChannel_ == null)
+      return;
+
+    try {
+      fileChannel_.close();
+    }
+    catch (IOException exception) {
+      // Ignore
+    }
+
+    if (file_ != null && !file_.delete())
+      file_.deleteOnExit();
+
+    fileChannel_ = null;
+    file_ = null;
+  }
+}
@@ -0,0 +1,33 @@
+package no.petroware.logio.util;
+
+/**
+ * Represents where the values of a {@link DataArray} are kept.
+ * <p>
+ * The modes other than HEAP apply to values of type double, float and
+ * integer, which are by far the largest part of log data. Values of
+ * other types are always kept in regular lists on the Java heap.
+ *
+ * @author <a href="mailto:info@petroware.no">Petroware AS</a>
+ */
+public enum MemoryMode
+{
+  /** Values are kept in primitive arrays on the Java heap. */
+  HEAP,
+
+  /**
+   * Values are kept in fixed size chunks of primitive arrays on the
+   * Java heap. Unlike HEAP the values are never copied as they grow,
+   * which avoids very large allocations for big curves.
+   */
+  SEGMENTED,
+
+  /** Values are kept in direct byte buffers outside the Java heap. */
+  DIRECT,
+
+  /**
+   * Values are kept in memory mapped regions of temporary files.
+   * The operating system pages the values to disk as needed, so the
+   * amount of data is limited by disk space rather than memory.
+   */
+  FILE_MAPPED;
+}
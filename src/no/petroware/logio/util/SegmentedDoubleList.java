@@ -0,0 +1,250 @@
+package no.petroware.logio.util;
+
+import java.util.Arrays;
+
+/**
+ * A list of native double values kept in fixed size chunks.
+ * <p>
+ * Unlike {@link DoubleList} the list is never copied as it grows:
+ * Values are appended to the last chunk, and a new chunk is added
+ * when it is full. This avoids the temporary need for both the old
+ * and the new array during growth, and the very large allocations
+ * of single arrays for big lists. Only the first chunk grows by
+ * copying until it reaches the chunk size, so that small lists
+ * remain small.
+ *
+ * @author <a href="mailto:info@petroware.no">Petroware AS</a>
+ */
+public final class SegmentedDoubleList
+{
+  /** Number of elements per chunk as a power of 2. */
+  private static final int CHUNK_SHIFT = 16;
+
+  /** Number of elements per chunk. */
+  private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+
+  /** Mask for the position of an element within its chunk. */
+  private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+  /** Initial capacity of the first chunk. */
+  private static final int INITIAL_CAPACITY = 1024;
+
+  /** The chunks of this list. Unused entries are null. */
+  private double[][] chunks_ = new double[4][];
+
+  /** Current size. [0,&gt;. */
+  private int size_ = 0;
+
+  /**
+   * Create a new empty Double list.
+   */
+  public SegmentedDoubleList()
+  {
+    // Nothing
+  }
+
+  /**
+   * Return the chunk to add an element to at the specified position,
+   * making room for it if necessary.
+   *
+   * @param chunkNo   Chunk of the element. [0,&gt;.
+   * @param position  Position of the element within the chunk. [0,CHUNK_SIZE&gt;.
+   * @return          The requested chunk. Never null.
+   */
+  private double[] getChunkForAdd(int chunkNo, int position)
+  {
+    if (chunkNo == chunks_.length)
+      chunks_ = Arrays.copyOf(chunks_, 2 * chunks_.length);
+
+    double[] chunk = chunks_[chunkNo];
+
+    if (chunk == null) {
+      chunk = new double[chunkNo == 0 ? INITIAL_CAPACITY : CHUNK_SIZE];
+      chunks_[chunkNo] = chunk;
+    }
+
+    // The first chunk, or a trimmed chunk, grows up to the chunk size
+    else if (position == chunk.length) {
+      chunk = Arrays.copyOf(chunk, Math.min(2 * chunk.length, CHUNK_SIZE));
+      chunks_[chunkNo] = chunk;
+    }
+
+    return chunk;
+  }
+
+  /**
+   * Add the specified value to the end of this list.
+   *
+   * @param value  Value to add. Double.NaN indicates no-value.
+   */
+  public void add(double value)
+  {
+    int position = size_ & CHUNK_MASK;
+    double[] chunk = getChunkForAdd(size_ >>> CHUNK_SHIFT, position);
+    chunk[position] = value;
+    size_++;
+  }
+
+  /**
+   * Add all the values of the specified list to the end of this list.
+   * The values are copied in bulk, and the existing values of this
+   * list are not copied.
+   *
+   * @param list  List to add values of. Non-null.
+   * @throws IllegalArgumentException  If list is null.
+   */
+  public void addAll(SegmentedDoubleList list)
+  {
+    if (list == null)
+      throw new IllegalArgumentException("list cannot be null");
+
+    // Size is captured in case list is this list
+    int size = list.size_;
+
+    int index = 0;
+    while (index < size) {
+      int position = size_ & CHUNK_MASK;
+      double[] chunk = getChunkForAdd(size_ >>> CHUNK_SHIFT, position);
+
+      int srcPosition = index & CHUNK_MASK;
+      int length = Math.min(Math.min(chunk.length - position, CHUNK_SIZE - srcPosition), size - index);
+
+      System.arraycopy(list.chunks_[index >>> CHUNK_SHIFT], srcPosition, chunk, position, length);
+
+      size_ += length;
+      index += length;
+    }
+  }
+
+  /**
+   * Return the value at the specified index of this list.
+   *
+   * @param index  Index of value to get. [0,size&gt;.
+   * @return       The requested value. Double.NaN if no-value.
+   * @throws IndexOutOfBoundsException  If index is out of bounds.
+   */
+  public double getDouble(int index)
+  {
+    if (index < 0 || index >= size_)
+      throw new IndexOutOfBoundsException("Index: " + index + " Size: " + size_);
+
+    return chunks_[index >>> CHUNK_SHIFT][index & CHUNK_MASK];
+  }
+
+  /**
+   * Check if the value at the specified index of this list is a no-value.
+   *
+   * @param index  Index of value to check. [0,size&gt;.
+   * @return       True if the value is a no-value, false otherwise.
+   * @throws IndexOutOfBoundsException  If index is out of bounds.
+   */
+  public boolean isNull(int index)
+  {
+    return Double.isNaN(getDouble(index));
+  }
+
+  /**
+   * Set the value at the specified index of this list.
+   *
+   * @param index  Index of value to set. [0,size&gt;.
+   * @param value  Value to set. Double.NaN indicates no-value.
+   * @throws IndexOutOfBoundsException  If index is out of bounds.
+   */
+  public void set(int index, double value)
+  {
+    if (index < 0 || index >= size_)
+      throw new IndexOutOfBoundsException("Index: " + index + " Size: " + size_);
+
+    chunks_[index >>> CHUNK_SHIFT][index & CHUNK_MASK] = value;
+  }
+
+  /**
+   * Copy all the values of this list into the specified array.
+   *
+   * @param dst     Array to copy into. Non-null.
+   * @param offset  Position in dst of the first value. [0,&gt;.
+   * @throws IndexOutOfBoundsException  If dst is too small to hold the values.
+   */
+  public void copyTo(double[] dst, int offset)
+  {
+    if (offset < 0 || offset + size_ > dst.length)
+      throw new IndexOutOfBoundsException("Offset: " + offset + " Size: " + size_);
+
+    int index = 0;
+    while (index < size_) {
+      int length = Math.min(CHUNK_SIZE, size_ - index);
+      System.arraycopy(chunks_[index >>> CHUNK_SHIFT], 0, dst, offset + index, length);
+      index += length;
+    }
+  }
+
+  /**
+   * Return the number of values of this list.
+   *
+   * @return  Number of values of this list. [0,&gt;.
+   */
+  public int size()
+  {
+    return size_;
+  }
+
+  /**
+   * Truncate this list to the specified size. The chunks beyond
+   * the new size are released, while the others are kept as is.
+   *
+   * @param size  New size of this list. [0,size].
+   * @throws IndexOutOfBoundsException  If size is out of bounds.
+   */
+  public void truncate(int size)
+  {
+    if (size < 0 || size > size_)
+      throw new IndexOutOfBoundsException("Size: " + size + " Current size: " + size_);
+
+    int nChunks = (size + CHUNK_SIZE - 1) >>> CHUNK_SHIFT;
+    int nOldChunks = (size_ + CHUNK_SIZE - 1) >>> CHUNK_SHIFT;
+
+    // Keep the first chunk to avoid growing it again
+    for (int chunkNo = Math.max(nChunks, 1); chunkNo < nOldChunks; chunkNo++)
+      chunks_[chunkNo] = null;
+
+    size_ = size;
+  }
+
+  /**
+   * Remove all the values of this list.
+   */
+  public void clear()
+  {
+    truncate(0);
+  }
+
+  /**
+   * Trim the last chunk to the actual size of the list.
+   * Typically done to save space when the list will grow no longer.
+   */
+  public void trimToSize()
+  {
+    int nChunks = (size_ + CHUNK_SIZE - 1) >>> CHUNK_SHIFT;
+
+    for (int chunkNo = nChunks; chunkNo < chunks_.length; chunkNo++)
+      chunks_[chunkNo] = null;
+
+    int length = size_ & CHUNK_MASK;
+    if (length > 0 && chunks_[nChunks - 1].length > length)
+      chunks_[nChunks - 1] = Arrays.copyOf(chunks_[nChunks - 1], length);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public String toString()
+  {
+    StringBuilder s = new StringBuilder("[");
+    for (int i = 0; i < size_; i++) {
+      if (i > 0)
+        s.append(", ");
+      s.append(isNull(i) ? "null" : String.valueOf(getDouble(i)));
+    }
+    s.append("]");
+    return s.toString();
+  }
+}